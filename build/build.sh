@@ -17,7 +17,9 @@ javac \
   -classpath "./../dep/cglib-nodep-2.2.3.jar:./../dep/objenesis-2.0.jar" \
   -sourcepath "./../src" \
   -d "./tmp/bin" \
-  ./../src/org/testory/Testory.java
+  ./../src/org/testory/Testory.java \
+  ./../src/org/testory/MockPregenerator.java \
+  ./../src/org/testory/InjectorProcessor.java
 
 #copy sources
 cp \
@@ -35,6 +37,12 @@ unzip \
   -d ./tmp/bin \
   org/*
 
+#copy manifest declaring agent
+cp \
+  --recursive \
+  ./manifest/. \
+  ./tmp/bin
+
 #copy license files
 cp \
   --recursive \
@@ -56,6 +64,14 @@ java \
   ./tmp/testory.jar \
   ./tmp/testory.jar
 
+#zip jar registering annotation processor, that is put on processor path next to testory.jar
+cd ./processor
+zip \
+  --recurse-paths \
+  ./../tmp/testory-processor.jar \
+  ./*
+cd ./..
+
 #cleanup
 rm \
   --recursive \
@@ -0,0 +1,11 @@
+#!/bin/bash
+# Generates jar with proxy classes of mocks injected by givenTest into compiled test classes.
+# Put generated jar on test classpath, next to testory.jar.
+#
+# usage: ./pregenerate.sh TESTORY_JAR TEST_CLASSPATH OUTPUT_JAR TEST_CLASSES_DIRECTORY...
+
+java \
+  -classpath "$1:$2" \
+  org.testory.MockPregenerator \
+  "$3" \
+  "${@:4}"
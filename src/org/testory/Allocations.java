@@ -0,0 +1,56 @@
+package org.testory;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by current thread, counted by jvm if it implements
+ * com.sun.management.ThreadMXBean. Counting neither boxes nor allocates, so allocation-free code
+ * is measured as 0 bytes.
+ */
+class Allocations {
+  private static final boolean supported = isSupported();
+
+  private Allocations() {}
+
+  private static boolean isSupported() {
+    try {
+      Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+      return type.isInstance(ManagementFactory.getThreadMXBean()) && Counter.isSupported();
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns -1 if jvm does not count allocations of current thread.
+   */
+  public static long allocatedBytes() {
+    return supported
+        ? Counter.allocatedBytes()
+        : -1;
+  }
+
+  /**
+   * Returns bytes allocated since <b>allocatedBytes</b> or -1 if unknown.
+   */
+  public static long allocatedBytesSince(long allocatedBytes) {
+    long now = allocatedBytes();
+    return allocatedBytes < 0 || now < 0
+        ? -1
+        : now - allocatedBytes;
+  }
+
+  /** loaded only if jvm has com.sun.management.ThreadMXBean */
+  private static class Counter {
+    private static final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+        .getThreadMXBean();
+
+    static boolean isSupported() {
+      return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+    }
+
+    static long allocatedBytes() {
+      return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package org.testory;
+
+import static org.testory.TestoryContext.setCurrentWhenEffect;
+
+import org.testory.Measurement.Measured;
+import org.testory.common.Closure;
+import org.testory.common.Histogram;
+import org.testory.common.Nullable;
+import org.testory.mock.Call;
+import org.testory.mock.PrimitiveHandler;
+
+/**
+ * Effect of when invoked repeatedly, first to let jit compile it, then to record nanoseconds of
+ * each invocation in histogram and {@link Measurement} of all of them. Effect returns or throws like
+ * last invocation. Results are consumed, so compiler cannot eliminate code computing them. Chained
+ * calls are forwarded by {@link Call}, so benchmarked call neither boxes nor copies arguments.
+ */
+class BenchmarkEffect extends PrimitiveHandler implements Closure, Measured {
+  public final Histogram histogram = new Histogram();
+  private final int warmUps, iterations;
+  @Nullable
+  private final Object target;
+  @Nullable
+  private Object result;
+  @Nullable
+  private Throwable thrown;
+  /** never returned by benchmarked code, but compiler cannot know it */
+  private volatile Object bait = new Object();
+  private long sink;
+  private final Measurement measurement = new Measurement();
+
+  BenchmarkEffect(int warmUps, int iterations, @Nullable Object target) {
+    this.warmUps = warmUps;
+    this.iterations = iterations;
+    this.target = target;
+  }
+
+  public static BenchmarkEffect benchmarked(int warmUps, int iterations, Closure closure) {
+    BenchmarkEffect effect = new BenchmarkEffect(warmUps, iterations, null);
+    effect.run(closure, warmUps, false);
+    effect.measurement.start();
+    effect.run(closure, iterations, true);
+    effect.measurement.stop();
+    return effect;
+  }
+
+  private void run(Closure closure, int times, boolean measured) {
+    for (int i = 0; i < times; i++) {
+      Object object = null;
+      Throwable throwable = null;
+      long start = System.nanoTime();
+      try {
+        object = closure.invoke();
+      } catch (Throwable e) {
+        throwable = e;
+      }
+      long nanos = System.nanoTime() - start;
+      if (measured) {
+        histogram.record(nanos);
+      }
+      consume(object);
+      result = object;
+      thrown = throwable;
+    }
+  }
+
+  private void consume(@Nullable Object object) {
+    if (object == bait) {
+      throw new Error();
+    }
+  }
+
+  public long handlePrimitive(Call call) {
+    long consumed = 0;
+    long bits = 0;
+    call.canForwardTo(target);
+    for (int i = 0; i < warmUps + iterations; i++) {
+      if (i == warmUps) {
+        measurement.start();
+      }
+      Throwable throwable = null;
+      long start = System.nanoTime();
+      try {
+        bits = call.forwardPrimitiveTo(target);
+      } catch (Throwable e) {
+        throwable = e;
+      }
+      long nanos = System.nanoTime() - start;
+      if (i >= warmUps) {
+        histogram.record(nanos);
+      }
+      consumed ^= bits;
+      thrown = throwable;
+    }
+    measurement.stop();
+    sink = consumed;
+    Class<?> type = call.method().getReturnType();
+    result = thrown != null || type == void.class
+        ? null
+        : Call.boxedOf(type, bits);
+    setCurrentWhenEffect(this);
+    return 0;
+  }
+
+  public Object handleObject(Call call) {
+    call.canForwardTo(target);
+    for (int i = 0; i < warmUps + iterations; i++) {
+      if (i == warmUps) {
+        measurement.start();
+      }
+      Object object = null;
+      Throwable throwable = null;
+      long start = System.nanoTime();
+      try {
+        object = call.forwardTo(target);
+      } catch (Throwable e) {
+        throwable = e;
+      }
+      long nanos = System.nanoTime() - start;
+      if (i >= warmUps) {
+        histogram.record(nanos);
+      }
+      consume(object);
+      result = object;
+      thrown = throwable;
+    }
+    measurement.stop();
+    setCurrentWhenEffect(this);
+    return null;
+  }
+
+  /**
+   * Measurement of all measured iterations.
+   */
+  public Measurement measurement() {
+    return measurement;
+  }
+
+  public int iterations() {
+    return iterations;
+  }
+
+  public Object invoke() throws Throwable {
+    if (thrown != null) {
+      throw thrown;
+    }
+    return result;
+  }
+
+  public String toString() {
+    if (histogram.count() == 0) {
+      return "0 iterations";
+    }
+    return histogram.count() + " iterations" //
+        + ", mean " + Math.round(histogram.mean()) + " ns" //
+        + ", p50 " + histogram.percentile(50) + " ns" //
+        + ", p99 " + histogram.percentile(99) + " ns" //
+        + ", p99.9 " + histogram.percentile(99.9) + " ns" //
+        + ", max " + histogram.max() + " ns" //
+        + (measurement.allocatedBytes < 0
+            ? ""
+            : ", allocated " + measurement.allocatedBytes + " bytes");
+  }
+}
@@ -0,0 +1,126 @@
+package org.testory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * How many times and how long thread was blocked on monitor or waiting, counted by
+ * {@link ThreadMXBean} with contention monitoring enabled, and how many times it was switched out by
+ * linux, read from /proc/thread-self/status. Unknown values are -1.
+ */
+class Blocking {
+  private static final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+  private static final File status = new File("/proc/thread-self/status");
+  private static final boolean hasStatus = status.isFile();
+  private static final Blocking unknown = new Blocking(-1, -1, -1, -1, -1, -1);
+  static {
+    try {
+      if (bean.isThreadContentionMonitoringSupported()) {
+        bean.setThreadContentionMonitoringEnabled(true);
+      }
+    } catch (SecurityException e) {
+      // times stay unknown
+    }
+  }
+
+  public final long blockedCount, blockedMillis, waitedCount, waitedMillis;
+  public final long voluntarySwitches, involuntarySwitches;
+
+  private Blocking(long blockedCount, long blockedMillis, long waitedCount, long waitedMillis,
+      long voluntarySwitches, long involuntarySwitches) {
+    this.blockedCount = blockedCount;
+    this.blockedMillis = blockedMillis;
+    this.waitedCount = waitedCount;
+    this.waitedMillis = waitedMillis;
+    this.voluntarySwitches = voluntarySwitches;
+    this.involuntarySwitches = involuntarySwitches;
+  }
+
+  /**
+   * Blocking of current thread since it started. Unknown for virtual threads, which are not
+   * tracked by {@link ThreadMXBean} and share status of carrier thread.
+   */
+  public static Blocking blockingOfCurrentThread() {
+    ThreadInfo info = bean.getThreadInfo(Thread.currentThread().getId());
+    if (info == null) {
+      return unknown;
+    }
+    String text = hasStatus
+        ? read(status)
+        : "";
+    return new Blocking(info.getBlockedCount(), info.getBlockedTime(), info.getWaitedCount(),
+        info.getWaitedTime(), valueOf("voluntary_ctxt_switches", text), valueOf(
+            "nonvoluntary_ctxt_switches", text));
+  }
+
+  private static String read(File file) {
+    byte[] buffer = new byte[4096];
+    int size = 0;
+    try {
+      InputStream input = new FileInputStream(file);
+      try {
+        int read;
+        while (size < buffer.length && (read = input.read(buffer, size, buffer.length - size)) > 0) {
+          size += read;
+        }
+      } finally {
+        input.close();
+      }
+    } catch (IOException e) {
+      return "";
+    }
+    return new String(buffer, 0, size);
+  }
+
+  private static long valueOf(String key, String text) {
+    int index = text.indexOf("\n" + key + ":");
+    if (index == -1) {
+      return -1;
+    }
+    int start = index + key.length() + 2;
+    int end = text.indexOf('\n', start);
+    try {
+      return Long.parseLong(text.substring(start, end == -1
+          ? text.length()
+          : end).trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Blocking between <b>before</b> and this.
+   */
+  public Blocking since(Blocking before) {
+    return new Blocking(minus(blockedCount, before.blockedCount), minus(blockedMillis,
+        before.blockedMillis), minus(waitedCount, before.waitedCount), minus(waitedMillis,
+        before.waitedMillis), minus(voluntarySwitches, before.voluntarySwitches), minus(
+        involuntarySwitches, before.involuntarySwitches));
+  }
+
+  private static long minus(long after, long before) {
+    return after < 0 || before < 0
+        ? -1
+        : after - before;
+  }
+
+  public String toString() {
+    return "blocked " + blockedCount + " times" //
+        + (blockedMillis < 0
+            ? ""
+            : " for " + blockedMillis + " milliseconds") //
+        + ", waited " + waitedCount + " times" //
+        + (waitedMillis < 0
+            ? ""
+            : " for " + waitedMillis + " milliseconds") //
+        + (voluntarySwitches < 0
+            ? ""
+            : ", switched " + voluntarySwitches + " times voluntarily and " + involuntarySwitches
+                + " times involuntarily");
+  }
+}
@@ -0,0 +1,106 @@
+package org.testory;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.testory.common.Closure;
+
+/**
+ * Effect of when invoked by many threads at once. Threads from {@link Threads} are started first
+ * and released together when all are ready, so invocations overlap as much as possible. Each thread
+ * writes outcome to its own slot of arrays, so collecting outcomes needs neither locks nor
+ * synchronization other than waiting for all threads to finish. Effect returns array of results in
+ * order of threads or throws first throwable.
+ */
+class ConcurrentEffect implements Closure {
+  public final Object[] results;
+  public final Throwable[] thrown;
+
+  private ConcurrentEffect(int threads) {
+    results = new Object[threads];
+    thrown = new Throwable[threads];
+  }
+
+  /**
+   * If starting any thread fails, threads already started are released without invoking closure, so
+   * they do not stay waiting forever. Abort is written before release, so released threads see it.
+   */
+  public static ConcurrentEffect concurrently(int threads, final Closure closure) {
+    final ConcurrentEffect effect = new ConcurrentEffect(threads);
+    final CountDownLatch ready = new CountDownLatch(threads);
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch finished = new CountDownLatch(threads);
+    final boolean[] aborted = new boolean[1];
+    boolean started = false;
+    try {
+      for (int i = 0; i < threads; i++) {
+        final int index = i;
+        Threads.newThread("testory-when-" + i, new Runnable() {
+          public void run() {
+            try {
+              ready.countDown();
+              start.await();
+              if (!aborted[0]) {
+                effect.results[index] = closure.invoke();
+              }
+            } catch (Throwable throwable) {
+              effect.thrown[index] = throwable;
+            } finally {
+              finished.countDown();
+            }
+          }
+        }).start();
+      }
+      started = true;
+    } finally {
+      if (!started) {
+        aborted[0] = true;
+        start.countDown();
+      }
+    }
+    awaitUninterruptibly(ready);
+    start.countDown();
+    awaitUninterruptibly(finished);
+    return effect;
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public int size() {
+    return results.length;
+  }
+
+  /**
+   * Describes outcome of each thread, like "returned 3" or "thrown java.lang.RuntimeException".
+   */
+  public String[] outcomes() {
+    String[] outcomes = new String[results.length];
+    for (int i = 0; i < outcomes.length; i++) {
+      outcomes[i] = thrown[i] == null
+          ? "returned " + results[i]
+          : "thrown " + thrown[i];
+    }
+    return outcomes;
+  }
+
+  public Object invoke() throws Throwable {
+    for (Throwable throwable : thrown) {
+      if (throwable != null) {
+        throw throwable;
+      }
+    }
+    return results.clone();
+  }
+}
@@ -14,23 +14,47 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 
+import org.testory.common.Nullable;
 import org.testory.mock.Handler;
 import org.testory.mock.Invocation;
 import org.testory.mock.Typing;
 
 public class Dummies {
   public static Object dummy(Class<?> type, String name) {
-    return dummy(signature(type, name));
+    return dummyFactory(type, name).dummy();
   }
 
-  private static Object dummy(Signature signature) {
-    return reusableDummies.containsKey(signature.type)
-        ? reusableDummies.get(signature.type)
-        : signature.type.isArray()
-            ? dummyArray(signature)
-            : Modifier.isFinal(signature.type.getModifiers())
-                ? dummyFinal(signature)
-                : dummyMock(signature);
+  /**
+   * Creates dummies of same type and name. Decision how to create them is made once, so factory can
+   * be reused for each injection.
+   */
+  interface Factory {
+    Object dummy();
+  }
+
+  static Factory dummyFactory(Class<?> type, String name) {
+    Signature signature = signature(type, name);
+    return reusableDummies.containsKey(type)
+        ? constant(reusableDummies.get(type))
+        : type.isArray()
+            ? dummyArrayFactory(signature)
+            : Modifier.isFinal(type.getModifiers())
+                ? dummyFinalFactory(signature)
+                : dummyMockFactory(signature);
+  }
+
+  /**
+   * Typing of mock that is dummy of <b>type</b> or null if dummy is not a mock.
+   */
+  @Nullable
+  static Typing mockTypingOf(Class<?> type) {
+    return reusableDummies.containsKey(type)
+        ? null
+        : type.isArray()
+            ? mockTypingOf(type.getComponentType())
+            : Modifier.isFinal(type.getModifiers())
+                ? null
+                : typingCastableTo(type);
   }
 
   private static Map<Class<?>, Object> reusableDummies = reusableDummies();
@@ -68,21 +92,40 @@ public class Dummies {
     return unmodifiableMap(map);
   }
 
-  private static Object dummyArray(Signature signature) {
-    Class<?> componentType = signature.type.getComponentType();
-    Object array = Array.newInstance(componentType, 1);
-    Array.set(array, 0, dummy(signature(componentType, signature.name)));
-    return array;
+  private static Factory constant(@Nullable final Object dummy) {
+    return new Factory() {
+      public Object dummy() {
+        return dummy;
+      }
+    };
   }
 
-  private static Object dummyFinal(Signature signature) {
+  private static Factory dummyArrayFactory(Signature signature) {
+    final Class<?> componentType = signature.type.getComponentType();
+    final Factory componentFactory = dummyFactory(componentType, signature.name);
+    return new Factory() {
+      public Object dummy() {
+        Object array = Array.newInstance(componentType, 1);
+        Array.set(array, 0, componentFactory.dummy());
+        return array;
+      }
+    };
+  }
+
+  private static Factory dummyFinalFactory(final Signature signature) {
     return signature.type == String.class
-        ? signature.name
-        : failCreatingDummy(signature);
+        ? constant(signature.name)
+        : new Factory() {
+          public Object dummy() {
+            return failCreatingDummy(signature);
+          }
+        };
   }
 
-  private static Object dummyMock(final Signature signature) {
-    return mock(typingCastableTo(signature.type), new Handler() {
+  /** handler does not depend on mock, so it is shared by all dummies of factory */
+  private static Factory dummyMockFactory(final Signature signature) {
+    final Typing typing = typingCastableTo(signature.type);
+    final Handler handler = new Handler() {
       public Object handle(Invocation invocation) {
         if (invocation.method.getName().equals("toString")) {
           return signature.name;
@@ -95,7 +138,12 @@ public class Dummies {
         }
         return null;
       }
-    });
+    };
+    return new Factory() {
+      public Object dummy() {
+        return mock(typing, handler);
+      }
+    };
   }
 
   private static Typing typingCastableTo(Class<?> type) {
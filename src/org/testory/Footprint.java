@@ -0,0 +1,296 @@
+package org.testory;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.testory.common.Nullable;
+
+/**
+ * Deep size of object graph, counting each object once. Sizes are measured by {@link TestoryAgent}
+ * if jvm runs it, otherwise estimated from layout of fields, using offsets of fields if
+ * sun.misc.Unsafe is available. Graph is traversed by loop, so deep graphs do not overflow stack.
+ * Classes, class loaders and threads are shared, so they are neither counted nor traversed.
+ */
+class Footprint {
+  private static final int alignment = 8;
+  @Nullable
+  private static final Object unsafe = unsafe();
+  @Nullable
+  private static final Method getObject = unsafeMethod("getObject", Object.class, long.class);
+  @Nullable
+  private static final Method objectFieldOffset = unsafeMethod("objectFieldOffset", Field.class);
+  private static final int referenceSize = referenceSize();
+  private static final int headerSize = referenceSize == 4
+      ? 12
+      : 16;
+  private static final int arrayHeaderSize = headerSize + 4;
+  private static final Map<Class<?>, SoftReference<Layout>> layouts = new WeakHashMap<Class<?>, SoftReference<Layout>>();
+
+  private Footprint() {}
+
+  public static long sizeOf(Object root) {
+    Instrumentation instrumentation = TestoryAgent.instrumentation();
+    IdentitySet visited = new IdentitySet();
+    Deque<Object> stack = new ArrayDeque<Object>();
+    visited.add(root);
+    stack.push(root);
+    long size = 0;
+    while (!stack.isEmpty()) {
+      Object object = stack.pop();
+      Class<?> type = object.getClass();
+      if (type.isArray()) {
+        size += instrumentation != null
+            ? instrumentation.getObjectSize(object)
+            : arraySizeOf(object, type);
+        if (!type.getComponentType().isPrimitive()) {
+          for (Object element : (Object[]) object) {
+            if (element != null && !isShared(element) && visited.add(element)) {
+              stack.push(element);
+            }
+          }
+        }
+      } else {
+        Layout layout = layoutOf(type);
+        size += instrumentation != null
+            ? instrumentation.getObjectSize(object)
+            : layout.size;
+        for (int i = 0; i < layout.references.length; i++) {
+          Object value = layout.read(i, object);
+          if (value != null && !isShared(value) && visited.add(value)) {
+            stack.push(value);
+          }
+        }
+      }
+    }
+    return size;
+  }
+
+  public static boolean isMeasured() {
+    return TestoryAgent.instrumentation() != null;
+  }
+
+  private static boolean isShared(Object object) {
+    return object instanceof Class<?> || object instanceof ClassLoader || object instanceof Thread;
+  }
+
+  private static long arraySizeOf(Object array, Class<?> type) {
+    Class<?> component = type.getComponentType();
+    int elementSize = component.isPrimitive()
+        ? primitiveSizeOf(component)
+        : referenceSize;
+    return aligned(arrayHeaderSize + (long) Array.getLength(array) * elementSize);
+  }
+
+  private static int primitiveSizeOf(Class<?> type) {
+    return type == long.class || type == double.class
+        ? 8
+        : type == int.class || type == float.class
+            ? 4
+            : type == short.class || type == char.class
+                ? 2
+                : 1;
+  }
+
+  private static long aligned(long size) {
+    return (size + alignment - 1) / alignment * alignment;
+  }
+
+  private static synchronized Layout layoutOf(Class<?> type) {
+    SoftReference<Layout> reference = layouts.get(type);
+    Layout layout = reference == null
+        ? null
+        : reference.get();
+    if (layout == null) {
+      layout = new Layout(type);
+      layouts.put(type, new SoftReference<Layout>(layout));
+    }
+    return layout;
+  }
+
+  /**
+   * Size of instances of class and fields referencing other objects, including inherited. Fields,
+   * that cannot be made accessible, like fields of jdk classes in modules, are read using offsets.
+   */
+  private static class Layout {
+    final long size;
+    final Field[] references;
+    /** offset of field read by unsafe, or -1 if field is accessible */
+    final long[] offsets;
+
+    Layout(Class<?> type) {
+      List<Field> referenceFields = new ArrayList<Field>();
+      List<Long> referenceOffsets = new ArrayList<Long>();
+      long end = headerSize;
+      long sizeOfFields = 0;
+      boolean hasOffsets = objectFieldOffset != null;
+      for (Class<?> t = type; t != null; t = t.getSuperclass()) {
+        for (Field field : t.getDeclaredFields()) {
+          if (!Modifier.isStatic(field.getModifiers())) {
+            int fieldSize = field.getType().isPrimitive()
+                ? primitiveSizeOf(field.getType())
+                : referenceSize;
+            long offset = offsetOf(field);
+            hasOffsets &= offset >= 0;
+            end = Math.max(end, offset + fieldSize);
+            sizeOfFields += fieldSize;
+            if (!field.getType().isPrimitive()) {
+              if (isAccessible(field)) {
+                referenceFields.add(field);
+                referenceOffsets.add(-1L);
+              } else if (offset >= 0) {
+                referenceFields.add(field);
+                referenceOffsets.add(offset);
+              }
+            }
+          }
+        }
+      }
+      size = aligned(hasOffsets
+          ? end
+          : headerSize + sizeOfFields);
+      references = referenceFields.toArray(new Field[0]);
+      offsets = new long[references.length];
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = referenceOffsets.get(i);
+      }
+    }
+
+    @Nullable
+    Object read(int index, Object object) {
+      try {
+        return offsets[index] == -1
+            ? references[index].get(object)
+            : invoke(getObject, object, offsets[index]);
+      } catch (IllegalAccessException e) {
+        throw new Error(e);
+      }
+    }
+  }
+
+  private static boolean isAccessible(Field field) {
+    try {
+      field.setAccessible(true);
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static long offsetOf(Field field) {
+    if (objectFieldOffset == null || getObject == null) {
+      return -1;
+    }
+    try {
+      return (Long) invoke(objectFieldOffset, field);
+    } catch (UnsupportedOperationException e) {
+      // field of hidden class or record
+      return -1;
+    }
+  }
+
+  @Nullable
+  private static Object unsafe() {
+    try {
+      Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return field.get(null);
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (NoSuchFieldException e) {
+      return null;
+    } catch (IllegalAccessException e) {
+      return null;
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static Method unsafeMethod(String name, Class<?>... parameters) {
+    try {
+      return unsafe == null
+          ? null
+          : unsafe.getClass().getMethod(name, parameters);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static int referenceSize() {
+    Method arrayIndexScale = unsafeMethod("arrayIndexScale", Class.class);
+    return arrayIndexScale == null
+        ? 4
+        : (Integer) invoke(arrayIndexScale, Object[].class);
+  }
+
+  private static Object invoke(Method method, Object... arguments) {
+    try {
+      return method.invoke(unsafe, arguments);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new Error(e);
+    } catch (IllegalAccessException e) {
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * Set of objects compared by identity in single array, using less memory per object than
+   * {@link java.util.IdentityHashMap}.
+   */
+  private static class IdentitySet {
+    private Object[] table = new Object[64];
+    private int size;
+
+    /** returns false if object was already added */
+    boolean add(Object object) {
+      int mask = table.length - 1;
+      int index = hash(object) & mask;
+      while (table[index] != null) {
+        if (table[index] == object) {
+          return false;
+        }
+        index = (index + 1) & mask;
+      }
+      table[index] = object;
+      size++;
+      if (size > table.length / 2) {
+        resize();
+      }
+      return true;
+    }
+
+    private void resize() {
+      Object[] old = table;
+      table = new Object[old.length * 2];
+      int mask = table.length - 1;
+      for (Object object : old) {
+        if (object != null) {
+          int index = hash(object) & mask;
+          while (table[index] != null) {
+            index = (index + 1) & mask;
+          }
+          table[index] = object;
+        }
+      }
+    }
+
+    private static int hash(Object object) {
+      int hash = System.identityHashCode(object);
+      return hash ^ (hash >>> 16);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package org.testory;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks test class, for which {@link InjectorProcessor} generates {@link Injector}, so
+ * {@link Testory#givenTest(Object)} injects dummies without reflection. Fields of test class must
+ * not be private. Inherited fields are injected only if they are accessible from package of test
+ * class, so private fields of superclasses, like fields of junit3 TestCase, are skipped. Processor runs only if requested when compiling tests, as described in
+ * {@link InjectorProcessor}.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface InjectDummies {}
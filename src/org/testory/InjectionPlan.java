@@ -0,0 +1,155 @@
+package org.testory;
+
+import static org.testory.Dummies.dummyFactory;
+import static org.testory.Dummies.mockTypingOf;
+import static org.testory.Injector.injectorOf;
+import static org.testory.mock.Mocks.warmUp;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testory.Dummies.Factory;
+import org.testory.common.ConcurrentWeakMap;
+import org.testory.common.Nullable;
+import org.testory.mock.Typing;
+
+/**
+ * Fields of test class, that {@link Testory#givenTest(Object)} injects dummies into, including
+ * inherited fields. Plan is computed once per class, so injection neither lists fields nor makes
+ * them accessible again, and dummies are created by factories resolved for each field. If class has
+ * {@link Injector} generated, plan delegates injection to it and uses no reflection. Primitive
+ * fields are never null, so they are not part of plan. Inherited fields, that cannot be made
+ * accessible, like fields of jdk classes in modules, are skipped.
+ */
+class InjectionPlan {
+  private static final ConcurrentWeakMap<Class<?>, SoftReference<InjectionPlan>> plans = new ConcurrentWeakMap<Class<?>, SoftReference<InjectionPlan>>();
+
+  @Nullable
+  private final Injector injector;
+  private final Field[] fields;
+  private final Factory[] factories;
+  /** typing of dummy of each field, or null if dummy is not a mock */
+  private final Typing[] typings;
+
+  private InjectionPlan(Class<?> type) {
+    injector = injectorOf(type);
+    List<Field> injected = new ArrayList<Field>();
+    for (Class<?> t = type; t != null; t = t.getSuperclass()) {
+      for (Field field : t.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()
+            && (t == type || injector != null || isAccessible(field))) {
+          injected.add(field);
+        }
+      }
+    }
+    fields = injected.toArray(new Field[0]);
+    factories = new Factory[fields.length];
+    typings = new Typing[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      if (injector == null) {
+        makeAccessible(fields[i]);
+        factories[i] = dummyFactory(fields[i].getType(), fields[i].getName());
+      }
+      typings[i] = mockTypingOf(fields[i].getType());
+    }
+  }
+
+  /**
+   * Finding cached plan takes no lock. Threads racing to compute plan of same class may compute it
+   * more than once, but agree on one of them.
+   */
+  public static InjectionPlan injectionPlanOf(Class<?> type) {
+    while (true) {
+      SoftReference<InjectionPlan> reference = plans.get(type);
+      InjectionPlan plan = reference == null
+          ? null
+          : reference.get();
+      if (plan != null) {
+        return plan;
+      }
+      plan = new InjectionPlan(type);
+      SoftReference<InjectionPlan> created = new SoftReference<InjectionPlan>(plan);
+      boolean registered = reference == null
+          ? plans.putIfAbsent(type, created) == null
+          : plans.replace(type, reference, created);
+      if (registered) {
+        return plan;
+      }
+    }
+  }
+
+  /**
+   * Typings of all dummies that are mocks.
+   */
+  public Set<Typing> typings() {
+    Set<Typing> set = new LinkedHashSet<Typing>();
+    for (Typing typing : typings) {
+      if (typing != null) {
+        set.add(typing);
+      }
+    }
+    return set;
+  }
+
+  /**
+   * Injects dummies into null fields of <b>test</b>. Proxy classes of dummies are generated in
+   * parallel.
+   */
+  public void inject(Object test) {
+    if (injector != null) {
+      try {
+        injector.inject(test);
+      } catch (RuntimeException e) {
+        throw new TestoryException(e);
+      }
+      return;
+    }
+    boolean[] injected = new boolean[fields.length];
+    List<Typing> generated = new ArrayList<Typing>();
+    try {
+      for (int i = 0; i < fields.length; i++) {
+        if (fields[i].get(test) == null) {
+          injected[i] = true;
+          if (typings[i] != null) {
+            generated.add(typings[i]);
+          }
+        }
+      }
+      warmUp(generated);
+      for (int i = 0; i < fields.length; i++) {
+        if (injected[i]) {
+          fields[i].set(test, factories[i].dummy());
+        }
+      }
+    } catch (RuntimeException e) {
+      throw new TestoryException(e);
+    } catch (IllegalAccessException e) {
+      throw new Error(e);
+    }
+  }
+
+  private static void makeAccessible(final Field field) {
+    AccessController.doPrivileged(new PrivilegedAction<Void>() {
+      public Void run() {
+        field.setAccessible(true);
+        return null;
+      }
+    });
+  }
+
+  private static boolean isAccessible(Field field) {
+    try {
+      makeAccessible(field);
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package org.testory;
+
+import static org.testory.Dummies.dummyFactory;
+import static org.testory.Dummies.mockTypingOf;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testory.common.Nullable;
+import org.testory.mock.Mocks;
+import org.testory.mock.Typing;
+
+/**
+ * Injects dummies into null fields of test class, like {@link Testory#givenTest(Object)} does, but
+ * by plain field access. Subclasses are generated by {@link InjectorProcessor} for test classes
+ * annotated with {@link InjectDummies}. Generated injector is named after binary name of test class
+ * followed by {@value #suffix}, so givenTest finds it without scanning classpath.
+ */
+public abstract class Injector {
+  static final String suffix = "$TestoryInjector";
+
+  /**
+   * Injects dummies into null fields of <b>test</b>.
+   */
+  public abstract void inject(Object test);
+
+  /**
+   * Factory of dummies of field of <b>type</b> and <b>name</b>.
+   */
+  protected static DummyFactory factory(Class<?> type, String name) {
+    return new DummyFactory(dummyFactory(type, name), mockTypingOf(type));
+  }
+
+  /**
+   * Starts generating proxy classes of dummies of <b>factories</b> in parallel. Null factories are
+   * skipped.
+   */
+  protected static void warmUp(DummyFactory... factories) {
+    List<Typing> typings = new ArrayList<Typing>();
+    for (DummyFactory factory : factories) {
+      if (factory != null && factory.typing != null) {
+        typings.add(factory.typing);
+      }
+    }
+    Mocks.warmUp(typings);
+  }
+
+  public static final class DummyFactory {
+    private final Dummies.Factory factory;
+    @Nullable
+    private final Typing typing;
+
+    private DummyFactory(Dummies.Factory factory, @Nullable Typing typing) {
+      this.factory = factory;
+      this.typing = typing;
+    }
+
+    public Object dummy() {
+      return factory.dummy();
+    }
+  }
+
+  /**
+   * Generated injector of <b>type</b> or null if there is none.
+   */
+  @Nullable
+  static Injector injectorOf(Class<?> type) {
+    Class<?> injectorClass;
+    try {
+      injectorClass = Class.forName(type.getName() + suffix, true, type.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+    if (!Injector.class.isAssignableFrom(injectorClass)) {
+      return null;
+    }
+    try {
+      return (Injector) injectorClass.getConstructor().newInstance();
+    } catch (NoSuchMethodException e) {
+      throw new Error(e);
+    } catch (InstantiationException e) {
+      throw new Error(e);
+    } catch (IllegalAccessException e) {
+      throw new Error(e);
+    } catch (InvocationTargetException e) {
+      throw new Error(e.getCause());
+    }
+  }
+}
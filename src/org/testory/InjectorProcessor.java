@@ -0,0 +1,194 @@
+package org.testory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import org.testory.common.Nullable;
+
+/**
+ * Generates {@link Injector} for each class annotated with {@link InjectDummies}. Injector reads and
+ * writes fields directly, including inherited fields, through raw types, so fields of generic types
+ * are assigned their erasures like reflection does. Fields of annotated class, that generated code
+ * cannot access, are reported as errors. Inherited fields, that generated code cannot access, like
+ * private fields of superclasses, are skipped.
+ * <p>
+ * Processor is not registered in testory.jar, so it does not run in every compilation that has
+ * testory.jar on classpath. It runs only if requested, either by
+ * {@code -processor org.testory.InjectorProcessor}, or by putting testory.jar and
+ * testory-processor.jar, that registers it, on {@code -processorpath}. Both work on jdk 23 and
+ * later, that does not run processors found on classpath without {@code -proc:full}. If processor
+ * does not run, no injector is generated and givenTest injects dummies by reflection.
+ */
+@SupportedAnnotationTypes("org.testory.InjectDummies")
+public class InjectorProcessor extends AbstractProcessor {
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+    for (Element element : round.getElementsAnnotatedWith(InjectDummies.class)) {
+      if (element.getKind() != ElementKind.CLASS) {
+        error("only classes can have generated injector", element);
+      } else {
+        generate((TypeElement) element);
+      }
+    }
+    return true;
+  }
+
+  private void generate(TypeElement test) {
+    PackageElement pakage = processingEnv.getElementUtils().getPackageOf(test);
+    if (isPrivate(test)) {
+      error("private class cannot have generated injector", test);
+      return;
+    }
+    List<VariableElement> fields = new ArrayList<VariableElement>();
+    for (TypeElement type = test; type != null; type = superclassOf(type)) {
+      for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+        if (!field.getModifiers().contains(Modifier.STATIC)
+            && !field.asType().getKind().isPrimitive()) {
+          if (isAccessible(field, pakage)) {
+            fields.add(field);
+          } else if (type == test) {
+            error("field is not accessible to injector generated in " + nameOf(pakage), field);
+            return;
+          }
+        }
+      }
+    }
+    String binaryName = processingEnv.getElementUtils().getBinaryName(test).toString();
+    String injectorName = binaryName + Injector.suffix;
+    try {
+      Writer writer = processingEnv.getFiler().createSourceFile(injectorName, test).openWriter();
+      try {
+        writer.write(sourceOf(test, pakage, injectorName, fields));
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      error("failed writing injector: " + e, test);
+    }
+  }
+
+  private String sourceOf(TypeElement test, PackageElement pakage, String injectorName,
+      List<VariableElement> fields) {
+    String simpleName = pakage.isUnnamed()
+        ? injectorName
+        : injectorName.substring(nameOf(pakage).length() + 1);
+    StringBuilder source = new StringBuilder();
+    if (!pakage.isUnnamed()) {
+      source.append("package ").append(nameOf(pakage)).append(";\n\n");
+    }
+    source.append("/** generated by ").append(InjectorProcessor.class.getName()).append(" */\n");
+    source.append("public final class ").append(simpleName).append(" extends ")
+        .append(Injector.class.getName()).append(" {\n");
+    for (int i = 0; i < fields.size(); i++) {
+      VariableElement field = fields.get(i);
+      source.append("  private final ").append(Injector.DummyFactory.class.getCanonicalName())
+          .append(" factory").append(i).append(" = factory(").append(erasureOf(field.asType()))
+          .append(".class, \"").append(field.getSimpleName()).append("\");\n");
+    }
+    source.append("\n");
+    source.append("  @SuppressWarnings(\"unchecked\")\n");
+    source.append("  public void inject(Object object) {\n");
+    source.append("    ").append(erasureOf(test.asType())).append(" test = (")
+        .append(erasureOf(test.asType())).append(") object;\n");
+    for (int i = 0; i < fields.size(); i++) {
+      source.append("    boolean inject").append(i).append(" = ").append(accessOf(test, fields.get(i)))
+          .append(" == null;\n");
+    }
+    source.append("    warmUp(");
+    for (int i = 0; i < fields.size(); i++) {
+      source.append(i == 0
+          ? ""
+          : ", ").append("inject").append(i).append(" ? factory").append(i).append(" : null");
+    }
+    source.append(");\n");
+    for (int i = 0; i < fields.size(); i++) {
+      VariableElement field = fields.get(i);
+      source.append("    if (inject").append(i).append(") {\n");
+      source.append("      ").append(accessOf(test, field)).append(" = (")
+          .append(erasureOf(field.asType())).append(") factory").append(i).append(".dummy();\n");
+      source.append("    }\n");
+    }
+    source.append("  }\n");
+    source.append("}\n");
+    return source.toString();
+  }
+
+  /** inherited fields are accessed through their declaring class, so they are not shadowed */
+  private String accessOf(TypeElement test, VariableElement field) {
+    Element declaring = field.getEnclosingElement();
+    return declaring.equals(test)
+        ? "test." + field.getSimpleName()
+        : "((" + erasureOf(declaring.asType()) + ") test)." + field.getSimpleName();
+  }
+
+  private boolean isAccessible(VariableElement field, PackageElement pakage) {
+    Element declaring = field.getEnclosingElement();
+    return !field.getModifiers().contains(Modifier.PRIVATE)
+        && !isPrivate(declaring)
+        && (processingEnv.getElementUtils().getPackageOf(declaring).equals(pakage)
+            || field.getModifiers().contains(Modifier.PUBLIC) && isPublic(declaring));
+  }
+
+  /** nested private class is accessible only from within its top level class */
+  private static boolean isPrivate(Element type) {
+    for (Element element = type; element.getKind() != ElementKind.PACKAGE; element = element
+        .getEnclosingElement()) {
+      if (element.getModifiers().contains(Modifier.PRIVATE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isPublic(Element type) {
+    for (Element element = type; element.getKind() != ElementKind.PACKAGE; element = element
+        .getEnclosingElement()) {
+      if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Nullable
+  private static TypeElement superclassOf(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    return superclass.getKind() == TypeKind.DECLARED
+        ? (TypeElement) ((DeclaredType) superclass).asElement()
+        : null;
+  }
+
+  private String erasureOf(TypeMirror type) {
+    return processingEnv.getTypeUtils().erasure(type).toString();
+  }
+
+  private static String nameOf(PackageElement pakage) {
+    return pakage.getQualifiedName().toString();
+  }
+
+  private void error(String message, Element element) {
+    processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+  }
+}
@@ -0,0 +1,52 @@
+package org.testory;
+
+import org.testory.common.Nullable;
+
+/**
+ * Nanoseconds, allocated bytes and blocking of thread running effect of when. Timing and counting
+ * allocations is closest to effect, so reading blocking does not disturb them. Blocking is read only
+ * if measurement is monitored, because reading it allocates, takes microseconds and enables
+ * contention monitoring of jvm. Unknown values are -1 or null.
+ */
+class Measurement {
+  @Nullable
+  private Blocking blockingAtStart;
+  private long allocatedAtStart;
+  private long nanosAtStart;
+
+  public long nanos = -1;
+  public long allocatedBytes = -1;
+  @Nullable
+  public Blocking blocking;
+  public boolean monitored;
+
+  public void start() {
+    if (monitored) {
+      blockingAtStart = Blocking.blockingOfCurrentThread();
+    }
+    allocatedAtStart = Allocations.allocatedBytes();
+    nanosAtStart = System.nanoTime();
+  }
+
+  public void stop() {
+    nanos = System.nanoTime() - nanosAtStart;
+    allocatedBytes = Allocations.allocatedBytesSince(allocatedAtStart);
+    if (monitored) {
+      blocking = Blocking.blockingOfCurrentThread().since(blockingAtStart);
+      blockingAtStart = null;
+    }
+  }
+
+  public void reset() {
+    nanos = -1;
+    allocatedBytes = -1;
+    blocking = null;
+  }
+
+  /**
+   * Effect of when, that measured thread running it.
+   */
+  interface Measured {
+    Measurement measurement();
+  }
+}
@@ -0,0 +1,100 @@
+package org.testory;
+
+import static org.testory.InjectionPlan.injectionPlanOf;
+import static org.testory.mock.Mocks.pregenerate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.testory.mock.Typing;
+
+/**
+ * Generates jar with proxy classes of dummies, that {@link Testory#givenTest(Object)} injects into
+ * fields of compiled test classes. Putting this jar on test classpath saves generating them at
+ * runtime. Only classes referring to givenTest are scanned, including fields they inherit.
+ * <p>
+ * usage: java org.testory.MockPregenerator OUTPUT_JAR TEST_CLASSES_DIRECTORY...
+ */
+public class MockPregenerator {
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("usage: java " + MockPregenerator.class.getName()
+          + " OUTPUT_JAR TEST_CLASSES_DIRECTORY...");
+      System.exit(1);
+    }
+    Map<String, File> classFiles = new TreeMap<String, File>();
+    URL[] urls = new URL[args.length - 1];
+    for (int i = 1; i < args.length; i++) {
+      File directory = new File(args[i]);
+      urls[i - 1] = directory.toURI().toURL();
+      findClassFiles(directory, "", classFiles);
+    }
+    ClassLoader loader = new URLClassLoader(urls, MockPregenerator.class.getClassLoader());
+    Set<Typing> typings = new LinkedHashSet<Typing>();
+    for (Map.Entry<String, File> entry : classFiles.entrySet()) {
+      if (refersToGivenTest(entry.getValue())) {
+        typings.addAll(typingsOfFields(entry.getKey(), loader));
+      }
+    }
+    OutputStream output = new FileOutputStream(args[0]);
+    try {
+      pregenerate(typings, output);
+    } finally {
+      output.close();
+    }
+  }
+
+  private static Set<Typing> typingsOfFields(String className, ClassLoader loader) {
+    try {
+      return injectionPlanOf(Class.forName(className, false, loader)).typings();
+    } catch (ClassNotFoundException e) {
+    } catch (LinkageError e) {}
+    return new LinkedHashSet<Typing>();
+  }
+
+  private static void findClassFiles(File directory, String packagePrefix,
+      Map<String, File> classFiles) {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (file.isDirectory()) {
+          findClassFiles(file, packagePrefix + name + ".", classFiles);
+        } else if (name.endsWith(".class")) {
+          classFiles.put(packagePrefix + name.substring(0, name.length() - ".class".length()),
+              file);
+        }
+      }
+    }
+  }
+
+  private static boolean refersToGivenTest(File classFile) throws IOException {
+    return new String(read(classFile), "ISO-8859-1").contains("givenTest");
+  }
+
+  private static byte[] read(File file) throws IOException {
+    InputStream input = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int count;
+      while ((count = input.read(buffer)) != -1) {
+        output.write(buffer, 0, count);
+      }
+      return output.toByteArray();
+    } finally {
+      input.close();
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package org.testory;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.testory.common.Nullable;
+
+/**
+ * Checks whether objects can be collected. Collecting is awaited by escalating garbage collections.
+ * Path retaining object is searched by walking fields, elements of arrays and contents of
+ * collections and maps, that may have inaccessible fields, breadth first, so shortest path is found.
+ * Referents of references, keys of weak hash maps and classes are not walked. Walk is bounded by
+ * number of visited objects.
+ */
+class Retention {
+  private static final int maxVisited = 100000;
+  private static final int maxAttempts = 10;
+
+  private Retention() {}
+
+  /**
+   * Returns true if referent of <b>reference</b> was collected after at most {@link #maxAttempts}
+   * garbage collections, waiting longer after each.
+   */
+  public static boolean awaitCollected(Reference<?> reference) {
+    ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+    Reference<?> watched = watch(reference, queue);
+    if (watched == null) {
+      return true;
+    }
+    try {
+      for (int attempt = 0; attempt < maxAttempts; attempt++) {
+        if (attempt > maxAttempts / 2) {
+          allocateGarbage();
+        }
+        System.gc();
+        System.runFinalization();
+        if (queue.remove(1L << attempt) != null || reference.get() == null) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return reference.get() == null;
+  }
+
+  /** referent is not kept in local variable, so it is not retained by this frame */
+  @Nullable
+  private static Reference<?> watch(Reference<?> reference, ReferenceQueue<Object> queue) {
+    return reference.get() == null
+        ? null
+        : new WeakReference<Object>(reference.get(), queue);
+  }
+
+  /** helps if explicit garbage collection is disabled */
+  private static void allocateGarbage() {
+    for (int i = 0; i < 16; i++) {
+      Object garbage = new byte[1024 * 1024];
+      garbage.hashCode();
+    }
+  }
+
+  /**
+   * Returns shortest path from one of <b>roots</b> to <b>target</b>, like "root.listeners[2].owner",
+   * or null if target was not found.
+   */
+  @Nullable
+  public static String pathTo(Object target, Map<String, Object> roots) {
+    Map<Object, Step> visited = new IdentityHashMap<Object, Step>();
+    Deque<Object> queue = new ArrayDeque<Object>();
+    for (Map.Entry<String, Object> root : roots.entrySet()) {
+      if (root.getValue() != null && !visited.containsKey(root.getValue())) {
+        visited.put(root.getValue(), new Step(null, root.getKey()));
+        queue.add(root.getValue());
+      }
+    }
+    while (!queue.isEmpty() && !visited.containsKey(target) && visited.size() < maxVisited) {
+      Object object = queue.remove();
+      for (Step step : stepsFrom(object, visited.get(object))) {
+        if (step.object != null && !visited.containsKey(step.object)) {
+          visited.put(step.object, step);
+          queue.add(step.object);
+        }
+      }
+    }
+    Step step = visited.get(target);
+    if (step == null) {
+      return null;
+    }
+    List<String> names = new ArrayList<String>();
+    for (; step != null; step = step.previous) {
+      names.add(0, step.name());
+    }
+    StringBuilder builder = new StringBuilder();
+    for (String name : names) {
+      builder.append(name);
+    }
+    return builder.toString();
+  }
+
+  private static List<Step> stepsFrom(Object object, Step previous) {
+    List<Step> steps = new ArrayList<Step>();
+    try {
+      if (object instanceof Class<?>) {
+        // static fields are not walked
+      } else if (object.getClass().isArray()) {
+        if (!object.getClass().getComponentType().isPrimitive()) {
+          for (int i = 0; i < Array.getLength(object); i++) {
+            steps.add(new Step(previous, "[" + i + "]", Array.get(object, i)));
+          }
+        }
+      } else if (object instanceof Map<?, ?>) {
+        int i = 0;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+          if (!(object instanceof WeakHashMap<?, ?>)) {
+            steps.add(new Step(previous, ".keySet()[" + i + "]", entry.getKey()));
+          }
+          steps.add(Step.valueOf(previous, entry.getKey(), entry.getValue()));
+          i++;
+        }
+      } else if (object instanceof Collection<?>) {
+        int i = 0;
+        for (Object element : (Collection<?>) object) {
+          steps.add(new Step(previous, "[" + i + "]", element));
+          i++;
+        }
+      } else {
+        for (Class<?> type = object.getClass(); type != null && type != Reference.class; type = type
+            .getSuperclass()) {
+          for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()) {
+              Object value = valueOf(field, object);
+              if (value != null) {
+                steps.add(new Step(previous, "." + field.getName(), value));
+              }
+            }
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      // walking concurrently modified collection
+    }
+    return steps;
+  }
+
+  @Nullable
+  private static Object valueOf(Field field, Object object) {
+    try {
+      field.setAccessible(true);
+      return field.get(object);
+    } catch (RuntimeException e) {
+      // field of module, that is not open
+      return null;
+    } catch (IllegalAccessException e) {
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * Step to value of map keeps its key, that is described only if step is on found path, because
+   * toString of key can be slow, have side effects or throw.
+   */
+  private static class Step {
+    @Nullable
+    final Step previous;
+    @Nullable
+    private final String name;
+    @Nullable
+    private final Object key;
+    @Nullable
+    final Object object;
+
+    private Step(@Nullable Step previous, @Nullable String name, @Nullable Object key,
+        @Nullable Object object) {
+      this.previous = previous;
+      this.name = name;
+      this.key = key;
+      this.object = object;
+    }
+
+    Step(@Nullable Step previous, String name, @Nullable Object object) {
+      this(previous, name, null, object);
+    }
+
+    Step(@Nullable Step previous, String name) {
+      this(previous, name, null, null);
+    }
+
+    static Step valueOf(@Nullable Step previous, @Nullable Object key, @Nullable Object value) {
+      return new Step(previous, null, key, value);
+    }
+
+    String name() {
+      if (name != null) {
+        return name;
+      }
+      String described;
+      try {
+        described = String.valueOf(key);
+      } catch (RuntimeException e) {
+        described = key.getClass().getName();
+      }
+      return ".get(" + described + ")";
+    }
+  }
+}
@@ -2,56 +2,55 @@ package org.testory;
 
 import static org.testory.Dummies.dummy;
 import static org.testory.Formats.formatSection;
-import static org.testory.WhenEffect.whenEffect;
-import static org.testory.common.Closures.invoked;
+import static org.testory.InjectionPlan.injectionPlanOf;
+import static org.testory.TestoryContext.currentWhenEffect;
+import static org.testory.TestoryContext.setCurrentWhenEffect;
 import static org.testory.common.Matchers.isMatcher;
 import static org.testory.common.Matchers.match;
 import static org.testory.common.Objects.areEqualDeep;
 import static org.testory.common.Throwables.gently;
-import static org.testory.mock.Invocations.invoke;
-import static org.testory.mock.Invocations.on;
 import static org.testory.mock.Mocks.mock;
+import static org.testory.mock.Mocks.warmUp;
 import static org.testory.mock.Typing.typing;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
+import java.lang.ref.Reference;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import org.testory.Measurement.Measured;
 import org.testory.common.Closure;
+import org.testory.common.IndexedClosure;
 import org.testory.common.Nullable;
 import org.testory.doc.TestoryDemo;
 import org.testory.doc.TestoryTutorial;
-import org.testory.mock.Handler;
+import org.testory.mock.Call;
 import org.testory.mock.Invocation;
 import org.testory.mock.Invocations;
+import org.testory.mock.PrimitiveHandler;
 
 /**
  * @see TestoryTutorial
  * @see TestoryDemo
  */
 public class Testory {
+  /**
+   * Injects dummies into null fields of <b>test</b>, including inherited fields. Proxy classes of
+   * dummies are generated in parallel.
+   */
   public static void givenTest(Object test) {
-    for (final Field field : test.getClass().getDeclaredFields()) {
-      if (!Modifier.isStatic(field.getModifiers())) {
-        AccessController.doPrivileged(new PrivilegedAction<Void>() {
-          public Void run() {
-            field.setAccessible(true);
-            return null;
-          }
-        });
-        try {
-          if (field.get(test) == null) {
-            field.set(test, dummy(field.getType(), field.getName()));
-          }
-        } catch (RuntimeException e) {
-          throw new TestoryException(e);
-        } catch (IllegalAccessException e) {
-          throw new Error(e);
-        }
-      }
-    }
+    injectionPlanOf(test.getClass()).inject(test);
+  }
+
+  /**
+   * Starts generating in background proxy classes of dummies, that {@link #givenTest(Object)}
+   * injects into instances of <b>testClass</b>.
+   */
+  public static void givenTestWarmUp(Class<?> testClass) {
+    checkUsage(testClass != null);
+    warmUp(injectionPlanOf(testClass).typings());
   }
 
   /**
@@ -72,11 +71,18 @@ public class Testory {
 
   public static <T> T givenTry(final T object) {
     checkUsage(object != null);
-    return (T) mock(typing(object.getClass(), new HashSet<Class<?>>()), new Handler() {
-      public Object handle(Invocation invocation) {
-        Invocation onObjectInvocation = on(object, invocation);
+    return (T) mock(typing(object.getClass(), new HashSet<Class<?>>()), new PrimitiveHandler() {
+      public long handlePrimitive(Call call) {
         try {
-          return invoke(onObjectInvocation);
+          return call.forwardPrimitiveTo(object);
+        } catch (Throwable e) {
+          return 0;
+        }
+      }
+
+      public Object handleObject(Call call) {
+        try {
+          return call.forwardTo(object);
         } catch (Throwable e) {
           return null;
         }
@@ -87,56 +93,188 @@ public class Testory {
   public static void givenTimes(int number, Closure closure) {
     checkUsage(number >= 0);
     checkUsage(closure != null);
-    for (int i = 0; i < number; i++) {
-      try {
+    try {
+      for (int i = 0; i < number; i++) {
         closure.invoke();
-      } catch (Throwable throwable) {
-        throw gently(throwable);
       }
+    } catch (Throwable throwable) {
+      throw gently(throwable);
+    }
+  }
+
+  /**
+   * Invokes <b>closure</b> <b>number</b> of times with index of iteration, so each iteration can
+   * vary arguments without creating closure. Not overloading givenTimes keeps givenTimes(number,
+   * null) unambiguous.
+   */
+  public static void givenTimesIndexed(int number, IndexedClosure closure) {
+    checkUsage(number >= 0);
+    checkUsage(closure != null);
+    try {
+      for (int i = 0; i < number; i++) {
+        closure.invoke(i);
+      }
+    } catch (Throwable throwable) {
+      throw gently(throwable);
     }
   }
 
+  /**
+   * Returns proxy forwarding single call to <b>object</b> <b>number</b> of times. Method is
+   * resolved once for all iterations.
+   */
   public static <T> T givenTimes(final int number, final T object) {
     checkUsage(number >= 0);
     checkUsage(object != null);
-    return (T) mock(typing(object.getClass(), new HashSet<Class<?>>()), new Handler() {
-      public Object handle(final Invocation invocation) throws Throwable {
-        final Invocation onObjectInvocation = on(object, invocation);
-        for (int i = 0; i < number; i++) {
-          invoke(onObjectInvocation);
-        }
+    return (T) mock(typing(object.getClass(), new HashSet<Class<?>>()), new PrimitiveHandler() {
+      public long handlePrimitive(Call call) throws Throwable {
+        call.forwardRepeatedlyTo(object, number);
+        return 0;
+      }
+
+      public Object handleObject(Call call) throws Throwable {
+        call.forwardRepeatedlyTo(object, number);
         return null;
       }
     });
   }
 
-  public static <T> T when(final T object) {
-    whenEffect.set(new Closure() {
-      public Object invoke() {
-        return object;
-      }
-    });
-    try {
-      return (T) mock(typing(object.getClass(), new HashSet<Class<?>>()), new Handler() {
-        public Object handle(final Invocation invocation) {
-          final Invocation onObjectInvocation = on(object, invocation);
-          Closure effect = invoked(new Closure() {
-            public Object invoke() throws Throwable {
-              return Invocations.invoke(onObjectInvocation);
-            }
-          });
-          whenEffect.set(effect);
-          return null;
+  /**
+   * Returns proxy forwarding call to <b>object</b> and recording effect of last call. Proxy can be
+   * called repeatedly until next when. It is reused in current {@link TestoryContext} for all objects
+   * of same class, so proxy kept from earlier when of same class forwards to object of latest when.
+   * Proxy kept from earlier when of other class throws {@link TestoryException} when called.
+   */
+  public static <T> T when(T object) {
+    return when(object, false);
+  }
+
+  private static <T> T when(final T object, boolean monitored) {
+    WhenProxy whenProxy = object == null
+        ? null
+        : WhenProxy.whenProxyOf(object, monitored);
+    if (whenProxy == null) {
+      setCurrentWhenEffect(new Closure() {
+        public Object invoke() {
+          return object;
         }
       });
-    } catch (RuntimeException e) {
       return null;
     }
+    setCurrentWhenEffect(whenProxy);
+    return (T) whenProxy.proxy();
   }
 
   public static void when(Closure closure) {
     checkUsage(closure != null);
-    whenEffect.set(invoked(closure));
+    setCurrentWhenEffect(TimedEffect.timed(closure));
+  }
+
+  /**
+   * Like {@link #when(Object)}, but also measures blocking of thread for {@link #thenNeverBlocked()}
+   * and {@link #thenBlockedAtMost(int, long, TimeUnit)}. Measuring blocking takes microseconds and
+   * enables thread contention monitoring of jvm.
+   */
+  public static <T> T whenMonitored(T object) {
+    return when(object, true);
+  }
+
+  /**
+   * Like {@link #when(Closure)}, but also measures blocking of thread for
+   * {@link #thenNeverBlocked()} and {@link #thenBlockedAtMost(int, long, TimeUnit)}.
+   */
+  public static void whenMonitored(Closure closure) {
+    checkUsage(closure != null);
+    setCurrentWhenEffect(TimedEffect.monitored(closure));
+  }
+
+  /**
+   * Invokes <b>closure</b> by dedicated thread and fails with stack trace of that thread if closure
+   * does not complete within <b>timeout</b>. Closure still running is interrupted and abandoned.
+   */
+  public static void whenWithin(Closure closure, long timeout, TimeUnit unit) {
+    checkUsage(closure != null);
+    checkUsage(timeout >= 0);
+    checkUsage(unit != null);
+    setCurrentWhenEffect(awaited(TimedEffect.timedInBackground(closure), timeout, unit, null));
+  }
+
+  /**
+   * Returns proxy forwarding single call to <b>object</b> by dedicated thread, like
+   * {@link #whenWithin(Closure, long, TimeUnit)}.
+   */
+  public static <T> T whenWithin(final T object, final long timeout, final TimeUnit unit) {
+    checkUsage(object != null);
+    checkUsage(timeout >= 0);
+    checkUsage(unit != null);
+    final StackTraceElement[] caller = callerStackTrace();
+    return (T) mock(typing(object.getClass(), new HashSet<Class<?>>()), new PrimitiveHandler() {
+      public long handlePrimitive(Call call) {
+        handleObject(call);
+        return 0;
+      }
+
+      public Object handleObject(Call call) {
+        final Invocation invocation = Invocations.on(object, call.toInvocation());
+        TimedEffect effect = TimedEffect.timedInBackground(new Closure() {
+          public Object invoke() throws Throwable {
+            return Invocations.invoke(invocation);
+          }
+        });
+        setCurrentWhenEffect(awaited(effect, timeout, unit, caller));
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Invokes <b>closure</b> <b>warmUps</b> times to let jit compile it, then <b>iterations</b> times
+   * recording nanoseconds of each invocation. Effect of when is last invocation. Assert timing using
+   * {@link #thenMeanWithin(long, TimeUnit)}, {@link #thenPercentileWithin(double, long, TimeUnit)}
+   * and {@link #thenThroughputAtLeast(double, TimeUnit)}.
+   */
+  public static void whenBenchmarked(Closure closure, int warmUps, int iterations) {
+    checkUsage(closure != null);
+    checkUsage(warmUps >= 0);
+    checkUsage(iterations > 0);
+    setCurrentWhenEffect(BenchmarkEffect.benchmarked(warmUps, iterations, closure));
+  }
+
+  /**
+   * Returns proxy forwarding single call to <b>object</b> repeatedly, like
+   * {@link #whenBenchmarked(Closure, int, int)}.
+   */
+  public static <T> T whenBenchmarked(T object, int warmUps, int iterations) {
+    checkUsage(object != null);
+    checkUsage(warmUps >= 0);
+    checkUsage(iterations > 0);
+    setCurrentWhenEffect(null);
+    return (T) mock(typing(object.getClass(), new HashSet<Class<?>>()), new BenchmarkEffect(
+        warmUps, iterations, object));
+  }
+
+  /**
+   * Invokes <b>closure</b> by <b>threads</b> threads released at once. Assert outcomes of all
+   * threads using {@link #thenReturnedByAll(Object)}, {@link #thenThrownByAny(Object)} and alike.
+   */
+  public static void whenConcurrently(int threads, Closure closure) {
+    checkUsage(threads > 0);
+    checkUsage(closure != null);
+    setCurrentWhenEffect(ConcurrentEffect.concurrently(threads, closure));
+  }
+
+  private static TimedEffect awaited(TimedEffect effect, long timeout, TimeUnit unit,
+      @Nullable StackTraceElement[] caller) {
+    if (!effect.await(unit.toNanos(timeout))) {
+      TestoryAssertionError error = assertionError("\n" //
+          + formatSection("expected completed within", formatTime(timeout, unit)) //
+          + formatSection("but still running", effect.abandon()));
+      if (caller != null) {
+        error.setStackTrace(caller);
+      }
+      throw error;
+    }
+    return effect;
   }
 
   public static void when(boolean value) {
@@ -181,8 +319,7 @@ public class Testory {
           + formatSection("expected returned", objectOrMatcher) //
           + formatSection("but thrown", throwable));
     }
-    if (!areEqualDeep(objectOrMatcher, object)
-        && !(objectOrMatcher != null && isMatcher(objectOrMatcher) && match(objectOrMatcher, object))) {
+    if (!matchesReturned(objectOrMatcher, object)) {
       throw assertionError("\n" //
           + formatSection("expected returned", objectOrMatcher) //
           + formatSection("but returned", object));
@@ -232,6 +369,334 @@ public class Testory {
     }
   }
 
+  /**
+   * Asserts like {@link #thenReturned(Object)} and that effect of when took at most <b>time</b>.
+   */
+  public static void thenReturnedWithin(@Nullable Object objectOrMatcher, long time, TimeUnit unit) {
+    checkUsage(time >= 0);
+    checkUsage(unit != null);
+    long nanos = elapsedNanosOf(getMeasurement());
+    thenReturned(objectOrMatcher);
+    if (nanos > unit.toNanos(time)) {
+      throw assertionError("\n" //
+          + formatSection("expected returned within", formatTime(time, unit)) //
+          + formatSection("but returned after", formatTime(nanos, TimeUnit.NANOSECONDS)));
+    }
+  }
+
+  public static void thenThrownWithin(Object matcher, long time, TimeUnit unit) {
+    checkUsage(time >= 0);
+    checkUsage(unit != null);
+    long nanos = elapsedNanosOf(getMeasurement());
+    thenThrown(matcher);
+    checkThrownWithin(nanos, time, unit);
+  }
+
+  public static void thenThrownWithin(Throwable throwable, long time, TimeUnit unit) {
+    checkUsage(time >= 0);
+    checkUsage(unit != null);
+    long nanos = elapsedNanosOf(getMeasurement());
+    thenThrown(throwable);
+    checkThrownWithin(nanos, time, unit);
+  }
+
+  public static void thenThrownWithin(Class<? extends Throwable> type, long time, TimeUnit unit) {
+    checkUsage(time >= 0);
+    checkUsage(unit != null);
+    long nanos = elapsedNanosOf(getMeasurement());
+    thenThrown(type);
+    checkThrownWithin(nanos, time, unit);
+  }
+
+  private static void checkThrownWithin(long nanos, long time, TimeUnit unit) {
+    if (nanos > unit.toNanos(time)) {
+      throw assertionError("\n" //
+          + formatSection("expected thrown within", formatTime(time, unit)) //
+          + formatSection("but thrown after", formatTime(nanos, TimeUnit.NANOSECONDS)));
+    }
+  }
+
+  public static void thenMeanWithin(long time, TimeUnit unit) {
+    checkUsage(time >= 0);
+    checkUsage(unit != null);
+    BenchmarkEffect effect = getBenchmarkEffect();
+    double mean = effect.histogram.mean();
+    if (mean > unit.toNanos(time)) {
+      throw assertionError("\n" //
+          + formatSection("expected mean within", formatTime(time, unit)) //
+          + formatSection("but was", formatTime(Math.round(mean), TimeUnit.NANOSECONDS)) //
+          + formatSection("benchmark", effect));
+    }
+  }
+
+  /**
+   * Asserts that <b>percentile</b> percent of benchmarked invocations, like 50, 99 or 99.9, took at
+   * most <b>time</b>.
+   */
+  public static void thenPercentileWithin(double percentile, long time, TimeUnit unit) {
+    checkUsage(0 < percentile && percentile <= 100);
+    checkUsage(time >= 0);
+    checkUsage(unit != null);
+    BenchmarkEffect effect = getBenchmarkEffect();
+    long nanos = effect.histogram.percentile(percentile);
+    if (nanos > unit.toNanos(time)) {
+      String name = "p" + (percentile == Math.rint(percentile)
+          ? String.valueOf((long) percentile)
+          : String.valueOf(percentile));
+      throw assertionError("\n" //
+          + formatSection("expected " + name + " within", formatTime(time, unit)) //
+          + formatSection("but was", formatTime(nanos, TimeUnit.NANOSECONDS)) //
+          + formatSection("benchmark", effect));
+    }
+  }
+
+  /**
+   * Asserts that benchmarked invocations, excluding time between them, can be repeated at least
+   * <b>operations</b> times per <b>unit</b>.
+   */
+  public static void thenThroughputAtLeast(double operations, TimeUnit unit) {
+    checkUsage(operations >= 0);
+    checkUsage(unit != null);
+    BenchmarkEffect effect = getBenchmarkEffect();
+    double throughput = (double) effect.histogram.count() * unit.toNanos(1)
+        / effect.histogram.sum();
+    if (throughput < operations) {
+      throw assertionError("\n" //
+          + formatSection("expected throughput at least", formatThroughput(operations, unit)) //
+          + formatSection("but was", formatThroughput(throughput, unit)) //
+          + formatSection("benchmark", effect));
+    }
+  }
+
+  /**
+   * Asserts that effect of when allocated at most <b>bytes</b>. Effect of
+   * {@link #whenBenchmarked(Closure, int, int)} includes all measured iterations.
+   */
+  public static void thenAllocatedAtMost(long bytes) {
+    checkUsage(bytes >= 0);
+    long allocated = allocatedBytesOf(getMeasurement());
+    if (allocated > bytes) {
+      throw assertionError("\n" //
+          + formatSection("expected allocated at most", bytes + " bytes") //
+          + formatSection("but allocated", allocated + " bytes"));
+    }
+  }
+
+  /**
+   * Asserts that iterations of {@link #whenBenchmarked(Closure, int, int)} allocated at most
+   * <b>bytes</b> per call on average, rounded down. Rare allocations made by jvm itself, like while
+   * compiling, are spread over all iterations, so allocation-free call can be asserted to allocate 0
+   * bytes.
+   */
+  public static void thenAllocatedAtMostPerCall(long bytes) {
+    checkUsage(bytes >= 0);
+    BenchmarkEffect effect = getBenchmarkEffect();
+    long allocated = allocatedBytesOf(effect.measurement());
+    if (allocated / effect.iterations() > bytes) {
+      throw assertionError("\n" //
+          + formatSection("expected allocated at most per call", bytes + " bytes") //
+          + formatSection("but allocated per call", (double) allocated / effect.iterations()
+              + " bytes") //
+          + formatSection("benchmark", effect));
+    }
+  }
+
+  /**
+   * Asserts that thread running effect of {@link #whenMonitored(Object)} was neither blocked on
+   * monitor nor waiting, parked or sleeping.
+   */
+  public static void thenNeverBlocked() {
+    Blocking blocking = blockingOf(getMeasurement());
+    if (blocking.blockedCount > 0 || blocking.waitedCount > 0) {
+      throw assertionError("\n" //
+          + formatSection("expected never blocked", "") //
+          + formatSection("but was", blocking));
+    }
+  }
+
+  /**
+   * Asserts that thread running effect of {@link #whenMonitored(Object)} was blocked on monitor or
+   * waiting at most <b>count</b> times for at most <b>time</b> in total, measured in milliseconds.
+   */
+  public static void thenBlockedAtMost(int count, long time, TimeUnit unit) {
+    checkUsage(count >= 0);
+    checkUsage(time >= 0);
+    checkUsage(unit != null);
+    Blocking blocking = blockingOf(getMeasurement());
+    checkUsage(blocking.blockedMillis >= 0 && blocking.waitedMillis >= 0);
+    if (blocking.blockedCount + blocking.waitedCount > count
+        || blocking.blockedMillis + blocking.waitedMillis > unit.toMillis(time)) {
+      throw assertionError("\n" //
+          + formatSection("expected blocked at most", count + " times for "
+              + formatTime(time, unit)) //
+          + formatSection("but was", blocking));
+    }
+  }
+
+  /**
+   * Asserts that referent of <b>reference</b> is collected by garbage collector, trying several
+   * times. Path retaining referent is searched from <b>roots</b> and effect of when.
+   */
+  public static void thenCollectable(Reference<?> reference, Object... roots) {
+    checkUsage(reference != null);
+    checkUsage(roots != null);
+    if (!Retention.awaitCollected(reference)) {
+      Object object = reference.get();
+      Map<String, Object> namedRoots = named(roots);
+      namedRoots.put("whenEffect", currentWhenEffect());
+      String path = Retention.pathTo(object, namedRoots);
+      throw assertionError("\n" //
+          + formatSection("expected collectable", object) //
+          + (path == null
+              ? formatSection("but was not collected", "")
+              : formatSection("but retained by", path)));
+    }
+  }
+
+  /**
+   * Asserts that <b>object</b> cannot be reached from <b>roots</b>.
+   */
+  public static void thenNotRetained(Object object, Object... roots) {
+    checkUsage(object != null);
+    checkUsage(roots != null);
+    String path = Retention.pathTo(object, named(roots));
+    if (path != null) {
+      throw assertionError("\n" //
+          + formatSection("expected not retained", object) //
+          + formatSection("but retained by", path));
+    }
+  }
+
+  private static Map<String, Object> named(Object[] roots) {
+    Map<String, Object> named = new LinkedHashMap<String, Object>();
+    for (int i = 0; i < roots.length; i++) {
+      named.put("roots[" + i + "]", roots[i]);
+    }
+    return named;
+  }
+
+  /**
+   * Asserts that <b>object</b> and objects reachable from it take at most <b>bytes</b> of heap,
+   * counting shared objects once. Sizes are exact if jvm runs {@link TestoryAgent}, otherwise they
+   * are estimated.
+   */
+  public static void thenRetainedSizeAtMost(Object object, long bytes) {
+    checkUsage(object != null);
+    checkUsage(bytes >= 0);
+    long size = Footprint.sizeOf(object);
+    if (size > bytes) {
+      throw assertionError("\n" //
+          + formatSection("expected retained size at most", bytes + " bytes") //
+          + formatSection(Footprint.isMeasured()
+              ? "but was"
+              : "but was estimated", size + " bytes"));
+    }
+  }
+
+  public static void thenReturnedByAll(@Nullable Object objectOrMatcher) {
+    ConcurrentEffect effect = getConcurrentEffect();
+    thenReturnedBy("all threads", effect.size(), effect.size(), objectOrMatcher, effect);
+  }
+
+  public static void thenReturnedByAny(@Nullable Object objectOrMatcher) {
+    ConcurrentEffect effect = getConcurrentEffect();
+    thenReturnedBy("any thread", 1, effect.size(), objectOrMatcher, effect);
+  }
+
+  /**
+   * Asserts that exactly <b>count</b> of threads of {@link #whenConcurrently(int, Closure)}
+   * returned object equal to or matching <b>objectOrMatcher</b>.
+   */
+  public static void thenReturnedBy(int count, @Nullable Object objectOrMatcher) {
+    checkUsage(count >= 0);
+    thenReturnedBy(count + " threads", count, count, objectOrMatcher, getConcurrentEffect());
+  }
+
+  private static void thenReturnedBy(String threads, int min, int max,
+      @Nullable Object objectOrMatcher, ConcurrentEffect effect) {
+    int count = 0;
+    for (int i = 0; i < effect.size(); i++) {
+      if (effect.thrown[i] == null && matchesReturned(objectOrMatcher, effect.results[i])) {
+        count++;
+      }
+    }
+    if (count < min || count > max) {
+      throw assertionError("\n" //
+          + formatSection("expected returned by " + threads, objectOrMatcher) //
+          + formatSection("but outcomes were", effect.outcomes()));
+    }
+  }
+
+  /**
+   * Asserts that all threads of {@link #whenConcurrently(int, Closure)} returned objects, that are
+   * not equal to each other.
+   */
+  public static void thenReturnedDistinct() {
+    ConcurrentEffect effect = getConcurrentEffect();
+    for (int i = 0; i < effect.size(); i++) {
+      boolean distinct = effect.thrown[i] == null;
+      for (int j = 0; distinct && j < i; j++) {
+        distinct = !areEqualDeep(effect.results[i], effect.results[j]);
+      }
+      if (!distinct) {
+        throw assertionError("\n" //
+            + formatSection("expected returned distinct", "") //
+            + formatSection("but outcomes were", effect.outcomes()));
+      }
+    }
+  }
+
+  /**
+   * Asserts that all threads of {@link #whenConcurrently(int, Closure)} threw throwable equal to,
+   * instance of or matching <b>throwableOrTypeOrMatcher</b>.
+   */
+  public static void thenThrownByAll(Object throwableOrTypeOrMatcher) {
+    ConcurrentEffect effect = getConcurrentEffect();
+    thenThrownBy("all threads", effect.size(), effect.size(), throwableOrTypeOrMatcher, effect);
+  }
+
+  public static void thenThrownByAny(Object throwableOrTypeOrMatcher) {
+    ConcurrentEffect effect = getConcurrentEffect();
+    thenThrownBy("any thread", 1, effect.size(), throwableOrTypeOrMatcher, effect);
+  }
+
+  public static void thenThrownBy(int count, Object throwableOrTypeOrMatcher) {
+    checkUsage(count >= 0);
+    thenThrownBy(count + " threads", count, count, throwableOrTypeOrMatcher,
+        getConcurrentEffect());
+  }
+
+  private static void thenThrownBy(String threads, int min, int max,
+      Object throwableOrTypeOrMatcher, ConcurrentEffect effect) {
+    checkUsage(throwableOrTypeOrMatcher instanceof Throwable
+        || throwableOrTypeOrMatcher instanceof Class<?> || throwableOrTypeOrMatcher != null
+        && isMatcher(throwableOrTypeOrMatcher));
+    int count = 0;
+    for (int i = 0; i < effect.size(); i++) {
+      if (effect.thrown[i] != null && matchesThrown(throwableOrTypeOrMatcher, effect.thrown[i])) {
+        count++;
+      }
+    }
+    if (count < min || count > max) {
+      throw assertionError("\n" //
+          + formatSection("expected thrown by " + threads, throwableOrTypeOrMatcher) //
+          + formatSection("but outcomes were", effect.outcomes()));
+    }
+  }
+
+  private static boolean matchesReturned(@Nullable Object objectOrMatcher, @Nullable Object object) {
+    return areEqualDeep(objectOrMatcher, object)
+        || objectOrMatcher != null && isMatcher(objectOrMatcher) && match(objectOrMatcher, object);
+  }
+
+  private static boolean matchesThrown(Object throwableOrTypeOrMatcher, Throwable throwable) {
+    return throwableOrTypeOrMatcher instanceof Class<?>
+        ? ((Class<?>) throwableOrTypeOrMatcher).isInstance(throwable)
+        : throwableOrTypeOrMatcher instanceof Throwable
+            ? areEqualDeep(throwableOrTypeOrMatcher, throwable)
+            : match(throwableOrTypeOrMatcher, throwable);
+  }
+
   public static void thenThrown(Object matcher) {
     checkUsage(matcher != null);
     checkUsage(isMatcher(matcher));
@@ -357,8 +822,59 @@ public class Testory {
     throwable.setStackTrace(new StackTraceElement[] { stackTrace[index + 1] });
   }
 
+  /**
+   * Stack trace of error thrown by public method of Testory called now, for errors thrown later.
+   */
+  private static StackTraceElement[] callerStackTrace() {
+    Throwable throwable = new Throwable();
+    cloakStackTrace(throwable);
+    return throwable.getStackTrace();
+  }
+
+  private static Measurement getMeasurement() {
+    Closure effect = getWhenEffect();
+    checkUsage(effect instanceof Measured);
+    return ((Measured) effect).measurement();
+  }
+
+  private static long elapsedNanosOf(Measurement measurement) {
+    checkUsage(measurement.nanos >= 0);
+    return measurement.nanos;
+  }
+
+  private static long allocatedBytesOf(Measurement measurement) {
+    checkUsage(measurement.allocatedBytes >= 0);
+    return measurement.allocatedBytes;
+  }
+
+  private static Blocking blockingOf(Measurement measurement) {
+    checkUsage(measurement.blocking != null && measurement.blocking.blockedCount >= 0);
+    return measurement.blocking;
+  }
+
+  private static String formatTime(long time, TimeUnit unit) {
+    return time + " " + unit.toString().toLowerCase(Locale.ENGLISH);
+  }
+
+  private static String formatThroughput(double operations, TimeUnit unit) {
+    String name = unit.toString().toLowerCase(Locale.ENGLISH);
+    return operations + " per " + name.substring(0, name.length() - 1);
+  }
+
+  private static ConcurrentEffect getConcurrentEffect() {
+    Closure effect = getWhenEffect();
+    checkUsage(effect instanceof ConcurrentEffect);
+    return (ConcurrentEffect) effect;
+  }
+
+  private static BenchmarkEffect getBenchmarkEffect() {
+    Closure effect = getWhenEffect();
+    checkUsage(effect instanceof BenchmarkEffect);
+    return (BenchmarkEffect) effect;
+  }
+
   private static Closure getWhenEffect() {
-    Closure effect = whenEffect.get();
+    Closure effect = currentWhenEffect();
     checkUsage(effect != null);
     return effect;
   }
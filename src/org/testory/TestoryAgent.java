@@ -0,0 +1,29 @@
+package org.testory;
+
+import java.lang.instrument.Instrumentation;
+
+import org.testory.common.Nullable;
+
+/**
+ * Optional agent giving {@link Testory#thenRetainedSizeAtMost(Object, long)} exact sizes of objects.
+ * Run jvm with -javaagent:testory.jar to enable it.
+ */
+public class TestoryAgent {
+  @Nullable
+  private static volatile Instrumentation instrumentation;
+
+  private TestoryAgent() {}
+
+  public static void premain(String arguments, Instrumentation instrumentation) {
+    TestoryAgent.instrumentation = instrumentation;
+  }
+
+  public static void agentmain(String arguments, Instrumentation instrumentation) {
+    TestoryAgent.instrumentation = instrumentation;
+  }
+
+  @Nullable
+  static Instrumentation instrumentation() {
+    return instrumentation;
+  }
+}
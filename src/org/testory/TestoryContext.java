@@ -0,0 +1,201 @@
+package org.testory;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+
+import org.testory.common.Closure;
+import org.testory.common.Nullable;
+
+/**
+ * State shared by given, when and then, that is effect of last when. By default each thread has own
+ * context, that is not shared with threads it starts, so threads started by test do not see or
+ * overwrite its effect. Context can be bound explicitly to code running on other threads, like
+ * tasks of executors, so when and then can be called from different threads and many scenarios can
+ * run concurrently on virtual threads. Context is bound using ScopedValue if jvm has it. Otherwise
+ * it is bound using inheritable thread local, so threads started by bound code inherit bound
+ * context.
+ */
+public final class TestoryContext {
+  private static final ThreadLocal<TestoryContext> defaultContexts = new ThreadLocal<TestoryContext>() {
+    protected TestoryContext initialValue() {
+      return new TestoryContext();
+    }
+  };
+  /** used only if jvm has no scoped values */
+  private static final InheritableThreadLocal<TestoryContext> boundContexts = new InheritableThreadLocal<TestoryContext>();
+  @Nullable
+  private static final Object scopedContext;
+  @Nullable
+  private static final Method where, run, isBound, get;
+  static {
+    Object scopedValue = null;
+    Method whereMethod = null, runMethod = null, isBoundMethod = null, getMethod = null;
+    try {
+      Class<?> type = Class.forName("java.lang.ScopedValue");
+      whereMethod = type.getMethod("where", type, Object.class);
+      runMethod = whereMethod.getReturnType().getMethod("run", Runnable.class);
+      isBoundMethod = type.getMethod("isBound");
+      getMethod = type.getMethod("get");
+      scopedValue = type.getMethod("newInstance").invoke(null);
+    } catch (ClassNotFoundException e) {
+      // jvm without scoped values
+    } catch (NoSuchMethodException e) {
+      scopedValue = null;
+    } catch (InvocationTargetException e) {
+      // scoped values are preview feature that is not enabled
+      scopedValue = null;
+    } catch (IllegalAccessException e) {
+      throw new Error(e);
+    }
+    scopedContext = scopedValue;
+    where = whereMethod;
+    run = runMethod;
+    isBound = isBoundMethod;
+    get = getMethod;
+  }
+
+  @Nullable
+  private volatile Closure whenEffect;
+  /** guarded by itself, because context can be shared by threads */
+  final Map<Class<?>, SoftReference<WhenProxy>> whenProxies = new WeakHashMap<Class<?>, SoftReference<WhenProxy>>();
+
+  private TestoryContext() {}
+
+  /**
+   * Creates new context, that is not bound to any thread.
+   */
+  public static TestoryContext newContext() {
+    return new TestoryContext();
+  }
+
+  /**
+   * Context bound to current thread or default context of current thread.
+   */
+  public static TestoryContext currentContext() {
+    if (scopedContext != null && (Boolean) invoke(isBound, scopedContext)) {
+      return (TestoryContext) invoke(get, scopedContext);
+    }
+    TestoryContext bound = boundContexts.get();
+    return bound != null
+        ? bound
+        : defaultContexts.get();
+  }
+
+  /**
+   * Effect of last when in current context.
+   */
+  @Nullable
+  static Closure currentWhenEffect() {
+    return currentContext().getWhenEffect();
+  }
+
+  static void setCurrentWhenEffect(@Nullable Closure effect) {
+    currentContext().setWhenEffect(effect);
+  }
+
+  /**
+   * Runs <b>runnable</b> with this context bound to current thread.
+   */
+  public void run(Runnable runnable) {
+    if (runnable == null) {
+      throw new TestoryException();
+    }
+    if (scopedContext != null) {
+      invoke(run, invoke(where, null, scopedContext, this), runnable);
+    } else {
+      TestoryContext previous = boundContexts.get();
+      boundContexts.set(this);
+      try {
+        runnable.run();
+      } finally {
+        boundContexts.set(previous);
+      }
+    }
+  }
+
+  /**
+   * Calls <b>callable</b> with this context bound to current thread.
+   */
+  public <T> T call(final Callable<T> callable) throws Exception {
+    if (callable == null) {
+      throw new TestoryException();
+    }
+    final Object[] result = new Object[1];
+    final Exception[] exception = new Exception[1];
+    run(new Runnable() {
+      public void run() {
+        try {
+          result[0] = callable.call();
+        } catch (Exception e) {
+          exception[0] = e;
+        }
+      }
+    });
+    if (exception[0] != null) {
+      throw exception[0];
+    }
+    return (T) result[0];
+  }
+
+  /**
+   * Returns runnable, that runs <b>runnable</b> with this context bound to thread running it.
+   */
+  public Runnable bind(final Runnable runnable) {
+    if (runnable == null) {
+      throw new TestoryException();
+    }
+    return new Runnable() {
+      public void run() {
+        TestoryContext.this.run(runnable);
+      }
+    };
+  }
+
+  /**
+   * Returns callable, that calls <b>callable</b> with this context bound to thread calling it.
+   */
+  public <T> Callable<T> bind(final Callable<T> callable) {
+    if (callable == null) {
+      throw new TestoryException();
+    }
+    return new Callable<T>() {
+      public T call() throws Exception {
+        return TestoryContext.this.call(callable);
+      }
+    };
+  }
+
+  @Nullable
+  Closure getWhenEffect() {
+    return whenEffect;
+  }
+
+  /** proxy, that stops being effect, is evicted, so it does not retain its target */
+  void setWhenEffect(@Nullable Closure effect) {
+    Closure previous = whenEffect;
+    whenEffect = effect;
+    if (previous instanceof WhenProxy && previous != effect) {
+      ((WhenProxy) previous).evict();
+    }
+  }
+
+  private static Object invoke(Method method, @Nullable Object instance, Object... arguments) {
+    try {
+      return method.invoke(instance, arguments);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new Error(cause);
+    } catch (IllegalAccessException e) {
+      throw new Error(e);
+    }
+  }
+}
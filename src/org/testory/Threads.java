@@ -0,0 +1,58 @@
+package org.testory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.testory.common.Nullable;
+
+/**
+ * Threads running effects of when. Threads are virtual if jvm supports virtual threads, otherwise
+ * they are daemon threads, so they do not keep jvm alive.
+ */
+class Threads {
+  @Nullable
+  private static final Method ofVirtual, unstarted;
+  static {
+    Method ofVirtualMethod, unstartedMethod;
+    try {
+      ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+      unstartedMethod = Class.forName("java.lang.Thread$Builder").getMethod("unstarted",
+          Runnable.class);
+    } catch (NoSuchMethodException e) {
+      ofVirtualMethod = null;
+      unstartedMethod = null;
+    } catch (ClassNotFoundException e) {
+      ofVirtualMethod = null;
+      unstartedMethod = null;
+    }
+    ofVirtual = ofVirtualMethod;
+    unstarted = unstartedMethod;
+  }
+
+  private Threads() {}
+
+  /**
+   * Thread runs <b>runnable</b> in new {@link TestoryContext}, so when called by runnable, even
+   * after thread is abandoned, does not change effect of when in context of test.
+   */
+  public static Thread newThread(String name, Runnable runnable) {
+    Thread thread = newThread(TestoryContext.newContext().bind(runnable));
+    thread.setName(name);
+    return thread;
+  }
+
+  private static Thread newThread(Runnable runnable) {
+    if (ofVirtual != null) {
+      try {
+        return (Thread) unstarted.invoke(ofVirtual.invoke(null), runnable);
+      } catch (InvocationTargetException e) {
+        // virtual threads are preview feature that is not enabled
+      } catch (IllegalAccessException e) {
+        throw new Error(e);
+      }
+    }
+    Thread thread = new Thread(runnable);
+    thread.setDaemon(true);
+    return thread;
+  }
+}
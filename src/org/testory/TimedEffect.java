@@ -0,0 +1,105 @@
+package org.testory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testory.Measurement.Measured;
+import org.testory.common.Closure;
+import org.testory.common.Nullable;
+
+/**
+ * Effect of when remembering {@link Measurement} of thread invoking closure. Closure is invoked
+ * either by current thread or by dedicated thread from {@link Threads}, that can be abandoned if
+ * closure hangs.
+ */
+class TimedEffect implements Closure, Measured {
+  private final CountDownLatch finished = new CountDownLatch(1);
+  @Nullable
+  private Thread thread;
+  @Nullable
+  private Object result;
+  @Nullable
+  private Throwable thrown;
+  private final Measurement measurement = new Measurement();
+
+  private TimedEffect() {}
+
+  public static TimedEffect timed(Closure closure) {
+    TimedEffect effect = new TimedEffect();
+    effect.run(closure);
+    return effect;
+  }
+
+  /**
+   * Like {@link #timed(Closure)}, but also measures blocking.
+   */
+  public static TimedEffect monitored(Closure closure) {
+    TimedEffect effect = new TimedEffect();
+    effect.measurement.monitored = true;
+    effect.run(closure);
+    return effect;
+  }
+
+  /**
+   * Starts invoking <b>closure</b> by dedicated thread. Call {@link #await(long)} to wait for
+   * effect.
+   */
+  public static TimedEffect timedInBackground(final Closure closure) {
+    final TimedEffect effect = new TimedEffect();
+    effect.thread = Threads.newThread("testory-when", new Runnable() {
+      public void run() {
+        effect.run(closure);
+      }
+    });
+    effect.thread.start();
+    return effect;
+  }
+
+  private void run(Closure closure) {
+    measurement.start();
+    try {
+      result = closure.invoke();
+    } catch (Throwable throwable) {
+      thrown = throwable;
+    } finally {
+      measurement.stop();
+      finished.countDown();
+    }
+  }
+
+  /**
+   * Returns false if closure is still running after <b>timeoutNanos</b>.
+   */
+  public boolean await(long timeoutNanos) {
+    try {
+      return finished.await(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return finished.getCount() == 0;
+    }
+  }
+
+  /**
+   * Describes stack of thread running closure and interrupts it, hoping it stops.
+   */
+  public String abandon() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(thread);
+    for (StackTraceElement element : thread.getStackTrace()) {
+      builder.append("\n      at ").append(element);
+    }
+    thread.interrupt();
+    return builder.toString();
+  }
+
+  public Measurement measurement() {
+    return measurement;
+  }
+
+  public Object invoke() throws Throwable {
+    if (thrown != null) {
+      throw thrown;
+    }
+    return result;
+  }
+}
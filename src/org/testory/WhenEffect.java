@@ -3,5 +3,25 @@ package org.testory;
 import org.testory.common.Closure;
 
 public class WhenEffect {
-  public static final ThreadLocal<Closure> whenEffect = new ThreadLocal<Closure>();
+  /**
+   * Compatibility view of effect of last when in {@link TestoryContext#currentContext()}. Despite
+   * its type, it is not local to thread. Get, set and remove delegate to current context, that can
+   * be shared by threads, and other methods of thread local do not apply to it.
+   *
+   * @deprecated effect belongs to {@link TestoryContext}
+   */
+  @Deprecated
+  public static final ThreadLocal<Closure> whenEffect = new ThreadLocal<Closure>() {
+    public Closure get() {
+      return TestoryContext.currentWhenEffect();
+    }
+
+    public void set(Closure effect) {
+      TestoryContext.setCurrentWhenEffect(effect);
+    }
+
+    public void remove() {
+      TestoryContext.setCurrentWhenEffect(null);
+    }
+  };
 }
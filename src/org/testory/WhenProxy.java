@@ -0,0 +1,162 @@
+package org.testory;
+
+import static org.testory.TestoryContext.setCurrentWhenEffect;
+import static org.testory.mock.Mocks.mock;
+import static org.testory.mock.Typing.typing;
+
+import java.lang.ref.SoftReference;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.testory.Measurement.Measured;
+import org.testory.common.Closure;
+import org.testory.common.Nullable;
+import org.testory.mock.Call;
+import org.testory.mock.PrimitiveHandler;
+
+/**
+ * Proxy returned by {@link Testory#when(Object)}, reused in {@link TestoryContext} for all targets
+ * of same class. Handler of proxy is also effect of when, so chained invocation does not create
+ * proxy. Proxy forwarding call is not reused, so target may call when on same class. Effect of outer
+ * when wins, as if effect of nested when was overwritten. Target is kept for repeated calls, until
+ * proxy is retargeted or stops being effect of when, so proxy kept for reuse does not retain it.
+ * Proxy, that stopped being effect, fails when called.
+ */
+class WhenProxy extends PrimitiveHandler implements Closure, Measured {
+  private Object proxy;
+  private Object target;
+  @Nullable
+  private Object result;
+  @Nullable
+  private Class<?> primitiveType;
+  private long primitiveBits;
+  @Nullable
+  private Throwable thrown;
+  private final Measurement measurement = new Measurement();
+  private boolean forwarding;
+
+  private WhenProxy() {}
+
+  /**
+   * Returns proxy of current {@link TestoryContext} retargeted to <b>target</b> or null if class of
+   * target cannot be proxied. Proxy measures blocking only if <b>monitored</b>.
+   */
+  @Nullable
+  public static WhenProxy whenProxyOf(Object target, boolean monitored) {
+    Map<Class<?>, SoftReference<WhenProxy>> proxies = TestoryContext.currentContext().whenProxies;
+    synchronized (proxies) {
+      return whenProxyOf(target, monitored, proxies);
+    }
+  }
+
+  @Nullable
+  private static WhenProxy whenProxyOf(Object target, boolean monitored,
+      Map<Class<?>, SoftReference<WhenProxy>> proxies) {
+    Class<?> type = target.getClass();
+    SoftReference<WhenProxy> reference = proxies.get(type);
+    WhenProxy whenProxy = reference == null
+        ? null
+        : reference.get();
+    if (whenProxy == null || whenProxy.forwarding) {
+      whenProxy = new WhenProxy();
+      try {
+        whenProxy.proxy = mock(typing(type, new HashSet<Class<?>>()), whenProxy);
+      } catch (RuntimeException e) {
+        return null;
+      }
+      if (reference == null || reference.get() == null) {
+        proxies.put(type, new SoftReference<WhenProxy>(whenProxy));
+      }
+    }
+    whenProxy.target = target;
+    whenProxy.returned(target);
+    whenProxy.measurement.reset();
+    whenProxy.measurement.monitored = monitored;
+    return whenProxy;
+  }
+
+  public Object proxy() {
+    return proxy;
+  }
+
+  /**
+   * Forgets target, unless it is being called. Evicted proxy fails when called, until it is
+   * retargeted.
+   */
+  void evict() {
+    if (!forwarding) {
+      target = null;
+    }
+  }
+
+  private void checkNotEvicted() {
+    if (target == null) {
+      throw new TestoryException("\n\tproxy returned by when was called after next when\n");
+    }
+  }
+
+  /**
+   * Primitive result is boxed only if effect is invoked. Forwarder is generated before measuring,
+   * so first call of class is not charged for it.
+   */
+  public long handlePrimitive(Call call) {
+    checkNotEvicted();
+    forwarding = true;
+    call.canForwardTo(target);
+    measurement.start();
+    try {
+      long bits = call.forwardPrimitiveTo(target);
+      returned(null);
+      primitiveType = call.method().getReturnType();
+      primitiveBits = bits;
+    } catch (Throwable throwable) {
+      thrown(throwable);
+    } finally {
+      measurement.stop();
+      forwarding = false;
+      setCurrentWhenEffect(this);
+    }
+    return 0;
+  }
+
+  public Object handleObject(Call call) {
+    checkNotEvicted();
+    forwarding = true;
+    call.canForwardTo(target);
+    measurement.start();
+    try {
+      returned(call.forwardTo(target));
+    } catch (Throwable throwable) {
+      thrown(throwable);
+    } finally {
+      measurement.stop();
+      forwarding = false;
+      setCurrentWhenEffect(this);
+    }
+    return null;
+  }
+
+  public Measurement measurement() {
+    return measurement;
+  }
+
+  private void returned(@Nullable Object object) {
+    result = object;
+    primitiveType = null;
+    thrown = null;
+  }
+
+  private void thrown(Throwable throwable) {
+    returned(null);
+    thrown = throwable;
+  }
+
+  public Object invoke() throws Throwable {
+    if (thrown != null) {
+      throw thrown;
+    }
+    return primitiveType == null || primitiveType == void.class
+        ? result
+        : Call.boxedOf(primitiveType, primitiveBits);
+  }
+}
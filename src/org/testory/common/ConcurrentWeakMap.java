@@ -0,0 +1,86 @@
+package org.testory.common;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent map, which compares keys by identity and holds them weakly like
+ * {@link java.util.WeakHashMap}, so it does not prevent unloading of class loaders. Reading takes no
+ * lock and, unlike reading of WeakHashMap, does not modify map. Entries of collected keys are
+ * expunged when entries are added.
+ */
+public class ConcurrentWeakMap<K, V> {
+  private final ConcurrentMap<Key<K>, V> map = new ConcurrentHashMap<Key<K>, V>();
+  private final ReferenceQueue<K> collectedKeys = new ReferenceQueue<K>();
+
+  @Nullable
+  public V get(K key) {
+    return map.get(new Lookup(key));
+  }
+
+  /**
+   * Returns value already associated with <b>key</b> or null if <b>value</b> was associated.
+   */
+  @Nullable
+  public V putIfAbsent(K key, V value) {
+    expungeCollectedKeys();
+    return map.putIfAbsent(new Key<K>(key, collectedKeys), value);
+  }
+
+  public boolean replace(K key, V oldValue, V newValue) {
+    return map.replace(new Key<K>(key, null), oldValue, newValue);
+  }
+
+  private void expungeCollectedKeys() {
+    Reference<? extends K> reference;
+    while ((reference = collectedKeys.poll()) != null) {
+      map.remove(reference);
+    }
+  }
+
+  /** equal to other key of same referent, or only to itself when referent is collected */
+  private static class Key<K> extends WeakReference<K> {
+    private final int hash;
+
+    public Key(K key, @Nullable ReferenceQueue<K> queue) {
+      super(key, queue);
+      hash = System.identityHashCode(key);
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+
+    public boolean equals(Object object) {
+      if (object == this) {
+        return true;
+      }
+      Object referent = get();
+      return referent != null && (object instanceof Key && referent == ((Key<?>) object).get()
+          || object instanceof Lookup && referent == ((Lookup) object).key);
+    }
+  }
+
+  /**
+   * Key used only to find entry. Unlike reference, it can be eliminated by escape analysis, so
+   * reading allocates nothing.
+   */
+  private static class Lookup {
+    private final Object key;
+
+    public Lookup(Object key) {
+      this.key = key;
+    }
+
+    public int hashCode() {
+      return System.identityHashCode(key);
+    }
+
+    public boolean equals(Object object) {
+      return object instanceof Key && key == ((Key<?>) object).get();
+    }
+  }
+}
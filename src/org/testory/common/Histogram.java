@@ -0,0 +1,79 @@
+package org.testory.common;
+
+import static org.testory.common.Checks.checkArgument;
+
+/**
+ * Histogram of non-negative values in fixed array of counts. Values below 32 are recorded exactly,
+ * greater values are rounded down to 5 significant bits, so percentiles are within 1/32 of recorded
+ * values. Minimum, maximum and mean are exact.
+ */
+public final class Histogram {
+  private static final int bits = 5;
+  private static final int subBuckets = 1 << bits;
+
+  private final long[] counts = new long[(64 - bits) * subBuckets];
+  private long count;
+  private long sum;
+  private long min = Long.MAX_VALUE;
+  private long max;
+
+  public void record(long value) {
+    checkArgument(value >= 0);
+    counts[indexOf(value)]++;
+    count++;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  private static int indexOf(long value) {
+    int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - bits);
+    return shift * subBuckets + (int) (value >>> shift);
+  }
+
+  private static long lowestOf(int index) {
+    int shift = Math.max(0, index / subBuckets - 1);
+    return (long) (index - shift * subBuckets) << shift;
+  }
+
+  public long count() {
+    return count;
+  }
+
+  public long min() {
+    checkArgument(count > 0);
+    return min;
+  }
+
+  public long max() {
+    checkArgument(count > 0);
+    return max;
+  }
+
+  public double mean() {
+    checkArgument(count > 0);
+    return (double) sum / count;
+  }
+
+  public long sum() {
+    return sum;
+  }
+
+  /**
+   * Value, that <b>percentile</b> percent of recorded values are not greater than, up to precision
+   * of histogram.
+   */
+  public long percentile(double percentile) {
+    checkArgument(0 < percentile && percentile <= 100);
+    checkArgument(count > 0);
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(max, Math.max(min, lowestOf(i)));
+      }
+    }
+    return max;
+  }
+}
@@ -0,0 +1,8 @@
+package org.testory.common;
+
+/**
+ * Closure invoked repeatedly with index of iteration.
+ */
+public interface IndexedClosure {
+  Object invoke(int index) throws Throwable;
+}
@@ -219,8 +219,8 @@ import org.testory.TestoryAssertionError;
  * <ul>
  * <li>field is not null</li>
  * <li>field is of primitive type</li>
- * <li>field is not declared in <code><b>test</b></code>'s class but in it's superclass</li>
  * </ul>
+ * Fields declared in superclasses of <code><b>test</b></code>'s class are injected too.
  * If field is of final class - injection fails unless class is one of
  * <ul>
  * <li>array - array with single dummy element</li>
@@ -237,6 +237,12 @@ import org.testory.TestoryAssertionError;
  * <li>{@link Method} - some method declared in dummy class</li>
  * <li>{@link Field} - some field declared in dummy class</li>
  * </ul>
+ * 
+ * Annotating test class with {@link org.testory.InjectDummies} makes javac generate injector of
+ * that class, if tests are compiled with {@code -processor org.testory.InjectorProcessor} or with
+ * testory.jar and testory-processor.jar on {@code -processorpath}. Then dummies are injected
+ * without reflection. Such fields must not be private. Without processor, dummies are still
+ * injected, but by reflection.
  * </p>
  */
 public class TestoryTutorial {}
@@ -0,0 +1,169 @@
+package org.testory.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testory.common.Nullable;
+
+/**
+ * Directory of generated proxy bytecode shared by many jvms. Bytecode is addressed by hash of typing
+ * and bytecode of all classes in typing, so it is invalidated whenever any of them changes. Files
+ * are written to temporary file and renamed, so concurrent jvms never read partial file. Cache is
+ * enabled by setting system property {@value #property} to path of directory.
+ */
+class BytecodeCache {
+  public static final String property = "testory.cache";
+  private static final int version = 2;
+  @Nullable
+  private static final BytecodeCache configuredCache = fromSystemProperty();
+
+  private final File directory;
+
+  public BytecodeCache(File directory) {
+    this.directory = directory;
+  }
+
+  @Nullable
+  private static BytecodeCache fromSystemProperty() {
+    String path = System.getProperty(property);
+    return path == null
+        ? null
+        : new BytecodeCache(new File(path));
+  }
+
+  @Nullable
+  public static BytecodeCache configuredCache() {
+    return configuredCache;
+  }
+
+  /**
+   * Returns key of bytecode generated by <b>engine</b> or null if bytecode of some class in typing
+   * is not available.
+   */
+  @Nullable
+  public String keyOf(String engine, Typing typing) {
+    StringBuilder builder = new StringBuilder();
+    builder.append(version).append(' ').append(engine).append(' ').append(Mocks.nameOf(typing))
+        .append('\n');
+    for (Class<?> type : classesOf(typing)) {
+      String hash = hashOf(type);
+      if (hash == null) {
+        return null;
+      }
+      builder.append(type.getName()).append(' ').append(hash).append('\n');
+    }
+    return Hashes.sha1(builder.toString());
+  }
+
+  @Nullable
+  public byte[] read(String key) {
+    File file = new File(directory, key + ".class");
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      byte[] bytes = readFully(new FileInputStream(file));
+      return isClassFile(bytes)
+          ? bytes
+          : null;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Failing to write is ignored, since it only means that bytecode will be generated again.
+   */
+  public void write(String key, byte[] bytes) {
+    File file = new File(directory, key + ".class");
+    File temporary = null;
+    try {
+      directory.mkdirs();
+      temporary = File.createTempFile(key, ".tmp", directory);
+      OutputStream output = new FileOutputStream(temporary);
+      try {
+        output.write(bytes);
+      } finally {
+        output.close();
+      }
+      if (temporary.renameTo(file)) {
+        temporary = null;
+      }
+    } catch (IOException e) {
+    } finally {
+      if (temporary != null) {
+        temporary.delete();
+      }
+    }
+  }
+
+  private static List<Class<?>> classesOf(Typing typing) {
+    Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
+    List<Class<?>> interfaces = new ArrayList<Class<?>>(typing.interfaces);
+    for (Class<?> type = typing.superclass; type != null; type = type.getSuperclass()) {
+      classes.add(type);
+      interfaces.addAll(Arrays.asList(type.getInterfaces()));
+    }
+    while (!interfaces.isEmpty()) {
+      Class<?> interfacee = interfaces.remove(interfaces.size() - 1);
+      if (classes.add(interfacee)) {
+        interfaces.addAll(Arrays.asList(interfacee.getInterfaces()));
+      }
+    }
+    List<Class<?>> sorted = new ArrayList<Class<?>>(classes);
+    Collections.sort(sorted, new Comparator<Class<?>>() {
+      public int compare(Class<?> first, Class<?> second) {
+        return first.getName().compareTo(second.getName());
+      }
+    });
+    return sorted;
+  }
+
+  /** classes of bootstrap loader change only with java */
+  @Nullable
+  private static String hashOf(Class<?> type) {
+    if (type.getClassLoader() == null) {
+      return System.getProperty("java.vm.version");
+    }
+    InputStream input = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class");
+    if (input == null) {
+      return null;
+    }
+    try {
+      return Hashes.sha1(readFully(input));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static boolean isClassFile(byte[] bytes) {
+    return bytes.length > 4 && (bytes[0] & 0xFF) == 0xCA && (bytes[1] & 0xFF) == 0xFE
+        && (bytes[2] & 0xFF) == 0xBA && (bytes[3] & 0xFF) == 0xBE;
+  }
+
+  private static byte[] readFully(InputStream input) throws IOException {
+    try {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int count;
+      while ((count = input.read(buffer)) != -1) {
+        output.write(buffer, 0, count);
+      }
+      return output.toByteArray();
+    } finally {
+      input.close();
+    }
+  }
+}
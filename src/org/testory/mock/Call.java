@@ -0,0 +1,327 @@
+package org.testory.mock;
+
+import static org.testory.mock.Invocation.trustedInvocation;
+
+import java.lang.reflect.Method;
+
+import org.testory.common.Nullable;
+
+/**
+ * Invocation intercepted by proxy, which keeps primitive arguments unboxed. Proxies generated by
+ * {@link ProxyGenerator} reuse calls of current thread, so call is valid only until handler
+ * returns. Primitive arguments are stored as bits in long, so {@link #floatAt(int)} and
+ * {@link #doubleAt(int)} are exact.
+ */
+public final class Call {
+  private static final ThreadLocal<Call> calls = new ThreadLocal<Call>() {
+    protected Call initialValue() {
+      return new Call();
+    }
+  };
+
+  private final Thread thread = Thread.currentThread();
+  @Nullable
+  private DispatchingProxyClass proxyClass;
+  private Object proxy;
+  private int index;
+  private Method method;
+  private Class<?>[] parameters;
+  private long[] primitives = new long[8];
+  private Object[] references = new Object[8];
+  private boolean busy;
+  @Nullable
+  private Call nested;
+
+  private Call() {}
+
+  /**
+   * Returns free call of current thread, trying <b>last</b> call first to skip thread local lookup.
+   * Nested calls, made while handling other call, get their own instances, which are kept for reuse.
+   */
+  static Call acquire(@Nullable Call last, DispatchingProxyClass proxyClass, Object proxy,
+      int index) {
+    Class<?>[] parameters = proxyClass.parameters[index];
+    Call call = last != null && last.thread == Thread.currentThread() && !last.busy
+        ? last
+        : calls.get();
+    while (call.busy) {
+      if (call.nested == null) {
+        call.nested = new Call();
+      }
+      call = call.nested;
+    }
+    call.busy = true;
+    call.proxyClass = proxyClass;
+    call.proxy = proxy;
+    call.index = index;
+    call.method = proxyClass.methods[index];
+    call.parameters = parameters;
+    if (call.primitives.length < parameters.length) {
+      call.primitives = new long[parameters.length];
+      call.references = new Object[parameters.length];
+    }
+    return call;
+  }
+
+  static Call of(Invocation invocation) {
+    Class<?>[] parameters = invocation.method.getParameterTypes();
+    Call call = new Call();
+    call.proxy = invocation.instance;
+    call.index = -1;
+    call.method = invocation.method;
+    call.parameters = parameters;
+    call.primitives = new long[parameters.length];
+    call.references = new Object[parameters.length];
+    for (int i = 0; i < parameters.length; i++) {
+      call.set(i, invocation.arguments.get(i));
+    }
+    return call;
+  }
+
+  void release() {
+    for (int i = 0; i < parameters.length; i++) {
+      references[i] = null;
+    }
+    proxyClass = null;
+    proxy = null;
+    busy = false;
+  }
+
+  public Call setInt(int position, int argument) {
+    primitives[position] = argument;
+    return this;
+  }
+
+  public Call setLong(int position, long argument) {
+    primitives[position] = argument;
+    return this;
+  }
+
+  public Call setFloat(int position, float argument) {
+    primitives[position] = Float.floatToRawIntBits(argument);
+    return this;
+  }
+
+  public Call setDouble(int position, double argument) {
+    primitives[position] = Double.doubleToRawLongBits(argument);
+    return this;
+  }
+
+  public Call setObject(int position, Object argument) {
+    references[position] = argument;
+    return this;
+  }
+
+  private void set(int position, Object argument) {
+    Class<?> type = parameters[position];
+    if (!type.isPrimitive()) {
+      setObject(position, argument);
+    } else if (type == boolean.class) {
+      setInt(position, (Boolean) argument
+          ? 1
+          : 0);
+    } else if (type == char.class) {
+      setInt(position, (Character) argument);
+    } else if (type == float.class) {
+      setFloat(position, (Float) argument);
+    } else if (type == double.class) {
+      setDouble(position, (Double) argument);
+    } else {
+      setLong(position, ((Number) argument).longValue());
+    }
+  }
+
+  public Object proxy() {
+    return proxy;
+  }
+
+  /**
+   * Index of method in proxy class or -1 if proxy class was not generated by {@link ProxyGenerator}.
+   * Index of method is same for all proxies of same class.
+   */
+  public int index() {
+    return index;
+  }
+
+  public Method method() {
+    return method;
+  }
+
+  public int size() {
+    return parameters.length;
+  }
+
+  public boolean booleanAt(int position) {
+    return primitives[position] != 0;
+  }
+
+  public char charAt(int position) {
+    return (char) primitives[position];
+  }
+
+  public byte byteAt(int position) {
+    return (byte) primitives[position];
+  }
+
+  public short shortAt(int position) {
+    return (short) primitives[position];
+  }
+
+  public int intAt(int position) {
+    return (int) primitives[position];
+  }
+
+  public long longAt(int position) {
+    return primitives[position];
+  }
+
+  public float floatAt(int position) {
+    return Float.intBitsToFloat((int) primitives[position]);
+  }
+
+  public double doubleAt(int position) {
+    return Double.longBitsToDouble(primitives[position]);
+  }
+
+  /**
+   * Argument at <b>position</b>, boxed if parameter is primitive.
+   */
+  @Nullable
+  public Object objectAt(int position) {
+    Class<?> type = parameters[position];
+    return !type.isPrimitive()
+        ? references[position]
+        : type == boolean.class
+            ? (Object) booleanAt(position)
+            : type == char.class
+                ? (Object) charAt(position)
+                : type == byte.class
+                    ? (Object) byteAt(position)
+                    : type == short.class
+                        ? (Object) shortAt(position)
+                        : type == int.class
+                            ? (Object) intAt(position)
+                            : type == long.class
+                                ? (Object) longAt(position)
+                                : type == float.class
+                                    ? (Object) floatAt(position)
+                                    : (Object) doubleAt(position);
+  }
+
+  /**
+   * Invokes method of this call with same arguments on <b>target</b> and returns its result, boxed
+   * if primitive. Calls of proxies generated by {@link ProxyGenerator} are forwarded by generated
+   * {@link Forwarder}, without reflection and copying arguments.
+   */
+  @Nullable
+  public Object forwardTo(Object target) throws Throwable {
+    if (proxyClass == null) {
+      return Invocations.invoke(toInvocation().on(target));
+    }
+    Class<?> type = method.getReturnType();
+    if (!type.isPrimitive()) {
+      return proxyClass.forwardObject(this, target);
+    }
+    long bits = proxyClass.forwardPrimitive(this, target);
+    return type == void.class
+        ? null
+        : boxedOf(type, bits);
+  }
+
+  /**
+   * Invokes method returning primitive or void on <b>target</b> and returns bits of result, like
+   * {@link PrimitiveHandler#handlePrimitive(Call)}.
+   */
+  public long forwardPrimitiveTo(Object target) throws Throwable {
+    return proxyClass == null
+        ? bitsOfBoxed(Invocations.invoke(toInvocation().on(target)))
+        : proxyClass.forwardPrimitive(this, target);
+  }
+
+  /**
+   * Invokes method of this call on <b>target</b> <b>times</b> times, discarding results. Way of
+   * invoking is resolved once for all iterations.
+   */
+  public void forwardRepeatedlyTo(Object target, int times) throws Throwable {
+    if (proxyClass == null) {
+      Invocation invocation = toInvocation().on(target);
+      for (int i = 0; i < times; i++) {
+        Invocations.invoke(invocation);
+      }
+    } else {
+      proxyClass.forwardRepeatedly(this, target, times);
+    }
+  }
+
+  /**
+   * Tells whether call is forwarded to <b>target</b> by generated {@link Forwarder}, generating
+   * forwarder now if needed, so later forwarding neither allocates nor uses reflection.
+   */
+  public boolean canForwardTo(Object target) {
+    return proxyClass != null && proxyClass.canForward(this, target);
+  }
+
+  public Invocation toInvocation() {
+    Object[] arguments = new Object[parameters.length];
+    for (int i = 0; i < arguments.length; i++) {
+      arguments[i] = objectAt(i);
+    }
+    return trustedInvocation(method, proxy, arguments);
+  }
+
+  /**
+   * Bits of primitive result returned by {@link PrimitiveHandler#handlePrimitive(Call)}.
+   */
+  public static long bitsOf(boolean result) {
+    return result
+        ? 1
+        : 0;
+  }
+
+  public static long bitsOf(float result) {
+    return Float.floatToRawIntBits(result);
+  }
+
+  public static long bitsOf(double result) {
+    return Double.doubleToRawLongBits(result);
+  }
+
+  static long bitsOfBoxed(@Nullable Object result) {
+    return result == null
+        ? 0
+        : result instanceof Boolean
+            ? bitsOf((Boolean) result)
+            : result instanceof Character
+                ? (Character) result
+                : result instanceof Float
+                    ? bitsOf((Float) result)
+                    : result instanceof Double
+                        ? bitsOf((Double) result)
+                        : ((Number) result).longValue();
+  }
+
+  /**
+   * Boxes bits of primitive result as <b>type</b>.
+   */
+  public static Object boxedOf(Class<?> type, long bits) {
+    return type == boolean.class
+        ? (Object) (bits != 0)
+        : type == char.class
+            ? (Object) (char) bits
+            : type == byte.class
+                ? (Object) (byte) bits
+                : type == short.class
+                    ? (Object) (short) bits
+                    : type == int.class
+                        ? (Object) (int) bits
+                        : type == long.class
+                            ? (Object) bits
+                            : type == float.class
+                                ? (Object) Float.intBitsToFloat((int) bits)
+                                : (Object) Double.longBitsToDouble(bits);
+  }
+
+  public String toString() {
+    return "call(" + method + ", " + index + ")";
+  }
+}
@@ -0,0 +1,171 @@
+package org.testory.mock;
+
+import static org.testory.mock.Invocation.trustedInvocation;
+import static org.testory.mock.Mocks.isFinalize;
+import static org.testory.mock.Typing.typing;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.cglib.asm.ClassReader;
+import net.sf.cglib.core.ClassNameReader;
+import net.sf.cglib.core.CodeGenerationException;
+import net.sf.cglib.core.DefaultGeneratorStrategy;
+import net.sf.cglib.core.GeneratorStrategy;
+import net.sf.cglib.core.ReflectUtils;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+import net.sf.cglib.proxy.NoOp;
+
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+import org.objenesis.instantiator.ObjectInstantiator;
+import org.testory.common.Nullable;
+
+/**
+ * Generates proxy classes of any typing with cglib. Fails with {@link IllegalArgumentException}
+ * instead of returning null, so it is used as last engine.
+ */
+class CglibEngine implements Engine {
+  private static final Objenesis objenesis = new ObjenesisStd(false);
+  private static final Callback noOp = new SerializableNoOp();
+
+  @Nullable
+  private final BytecodeCache cache;
+
+  public CglibEngine(@Nullable BytecodeCache cache) {
+    this.cache = cache;
+  }
+
+  public CglibEngine() {
+    this(null);
+  }
+
+  public ProxyClass proxyClass(Typing typing, ClassLoader loader) {
+    return new CglibProxyClass(typing, proxyClassOf(tryWithoutObjectBecauseOfCglibBug(typing),
+        loader));
+  }
+
+  private Class<?> proxyClassOf(Typing typing, ClassLoader loader) {
+    String key = cache == null
+        ? null
+        : cache.keyOf("cglib", typing);
+    byte[] cached = key == null
+        ? null
+        : cache.read(key);
+    Class<?> type = cached == null
+        ? null
+        : tryDefineClass(cached, loader);
+    if (type != null) {
+      return type;
+    }
+    final List<byte[]> generated = new ArrayList<byte[]>();
+    type = newProxyClassByCglib(typing, loader, new DefaultGeneratorStrategy() {
+      protected byte[] transform(byte[] bytecode) {
+        generated.add(bytecode);
+        return bytecode;
+      }
+    });
+    if (key != null && generated.size() == 1) {
+      cache.write(key, generated.get(0));
+    }
+    return type;
+  }
+
+  /** class could be already defined if it was unreachable only from cache of mocks */
+  @Nullable
+  private static Class<?> tryDefineClass(byte[] bytecode, ClassLoader loader) {
+    try {
+      String name = ClassNameReader.getClassName(new ClassReader(bytecode));
+      try {
+        return Class.forName(name, false, loader);
+      } catch (ClassNotFoundException e) {
+        return ReflectUtils.defineClass(name, bytecode, loader);
+      }
+    } catch (Exception e) {
+      return null;
+    } catch (LinkageError e) {
+      return null;
+    }
+  }
+
+  private static Class<?> newProxyClassByCglib(Typing typing, ClassLoader loader,
+      GeneratorStrategy strategy) {
+    Enhancer enhancer = new Enhancer() {
+      /** includes all constructors */
+      protected void filterConstructors(Class sc, List constructors) {}
+    };
+    enhancer.setUseCache(false);
+    enhancer.setStrategy(strategy);
+    enhancer.setClassLoader(loader);
+    enhancer.setUseFactory(true);
+    enhancer.setSuperclass(typing.superclass);
+    enhancer.setInterfaces(typing.interfaces.toArray(new Class[0]));
+    enhancer.setCallbackTypes(new Class[] { MethodInterceptor.class, NoOp.class });
+    enhancer.setCallbackFilter(ignoringBridgeMethods);
+    try {
+      return enhancer.createClass();
+    } catch (CodeGenerationException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static final CallbackFilter ignoringBridgeMethods = new CallbackFilter() {
+    public int accept(Method method) {
+      return method.isBridge()
+          ? 1
+          : 0;
+    }
+  };
+
+  /** public, so proxy defined in other class loader can extend it */
+  public static class MockableObject {}
+
+  private static Typing tryWithoutObjectBecauseOfCglibBug(Typing typing) {
+    return typing.superclass == Object.class
+        ? typing(MockableObject.class, typing.interfaces)
+        : typing;
+  }
+
+  /**
+   * Instances are created by instantiator cached with proxy class, skipping constructors, as
+   * opposed to {@link Factory#newInstance(Callback[])} which invokes constructor of superclass.
+   */
+  private static class CglibProxyClass extends ProxyClass {
+    private final ObjectInstantiator instantiator;
+
+    public CglibProxyClass(Typing typing, Class<?> type) {
+      super(typing, type);
+      this.instantiator = objenesis.getInstantiatorOf(type);
+    }
+
+    public Object newProxy(Handler handler) {
+      Factory proxy = (Factory) instantiator.newInstance();
+      proxy.setCallbacks(new Callback[] { asMethodInterceptor(handler), noOp });
+      return proxy;
+    }
+  }
+
+  private static MethodInterceptor asMethodInterceptor(final Handler handler) {
+    return new MethodInterceptor() {
+      public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy)
+          throws Throwable {
+        return isFinalize(method)
+            ? null
+            : handler.handle(trustedInvocation(method, obj, args));
+      }
+    };
+  }
+
+  private static class SerializableNoOp implements NoOp, Serializable {
+    private static final long serialVersionUID = 4961170565306875478L;
+
+    private SerializableNoOp() {}
+  }
+}
@@ -0,0 +1,70 @@
+package org.testory.mock;
+
+import static org.testory.common.Checks.checkArgument;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+
+import org.testory.common.ConcurrentWeakMap;
+
+/**
+ * Bridges between class loaders are canonical, so proxy classes of same typing share loader. Bridges
+ * are weakly referenced and can be unloaded with classes they define. Finding existing bridge takes
+ * no lock. Threads racing to create same bridge agree on one of them.
+ */
+class ClassLoaders {
+  private static final ConcurrentWeakMap<ClassLoader, ConcurrentWeakMap<ClassLoader, WeakReference<ClassLoader>>> bridges = new ConcurrentWeakMap<ClassLoader, ConcurrentWeakMap<ClassLoader, WeakReference<ClassLoader>>>();
+
+  private ClassLoaders() {}
+
+  public static ClassLoader chain(Iterable<ClassLoader> loaders) {
+    Iterator<ClassLoader> iterator = loaders.iterator();
+    checkArgument(iterator.hasNext());
+    ClassLoader loader = iterator.next();
+    while (iterator.hasNext()) {
+      loader = bridge(loader, iterator.next());
+    }
+    return loader;
+  }
+
+  private static ClassLoader bridge(ClassLoader first, ClassLoader second) {
+    ConcurrentWeakMap<ClassLoader, WeakReference<ClassLoader>> bridgesOfFirst = bridges.get(first);
+    if (bridgesOfFirst == null) {
+      ConcurrentWeakMap<ClassLoader, WeakReference<ClassLoader>> created = new ConcurrentWeakMap<ClassLoader, WeakReference<ClassLoader>>();
+      bridgesOfFirst = bridges.putIfAbsent(first, created);
+      if (bridgesOfFirst == null) {
+        bridgesOfFirst = created;
+      }
+    }
+    while (true) {
+      WeakReference<ClassLoader> reference = bridgesOfFirst.get(second);
+      ClassLoader bridge = reference == null
+          ? null
+          : reference.get();
+      if (bridge != null) {
+        return bridge;
+      }
+      bridge = new Bridge(first, second);
+      WeakReference<ClassLoader> created = new WeakReference<ClassLoader>(bridge);
+      boolean registered = reference == null
+          ? bridgesOfFirst.putIfAbsent(second, created) == null
+          : bridgesOfFirst.replace(second, reference, created);
+      if (registered) {
+        return bridge;
+      }
+    }
+  }
+
+  private static class Bridge extends ClassLoader {
+    private final ClassLoader second;
+
+    public Bridge(ClassLoader first, ClassLoader second) {
+      super(first);
+      this.second = second;
+    }
+
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      return second.loadClass(name);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package org.testory.mock;
+
+import org.testory.common.Nullable;
+
+/**
+ * Runtime support of proxy classes generated by {@link ProxyGenerator}. Every proxy holds
+ * dispatcher, which passes intercepted calls to handler. Calls are passed to
+ * {@link PrimitiveHandler} directly and converted to {@link Invocation} for other handlers. Not
+ * meant to be used directly.
+ */
+public class Dispatcher {
+  private final Handler handler;
+  private final PrimitiveHandler primitiveHandler;
+  private final DispatchingProxyClass proxyClass;
+  @Nullable
+  private Call last;
+
+  Dispatcher(Handler handler, DispatchingProxyClass proxyClass) {
+    this.handler = handler;
+    this.primitiveHandler = handler instanceof PrimitiveHandler
+        ? (PrimitiveHandler) handler
+        : null;
+    this.proxyClass = proxyClass;
+  }
+
+  public Call call(Object proxy, int index) {
+    Call call = Call.acquire(last, proxyClass, proxy, index);
+    last = call;
+    return call;
+  }
+
+  public void dispatchVoid(Call call) throws Throwable {
+    try {
+      if (primitiveHandler != null) {
+        primitiveHandler.handlePrimitive(call);
+      } else {
+        handler.handle(call.toInvocation());
+      }
+    } finally {
+      call.release();
+    }
+  }
+
+  public boolean dispatchBoolean(Call call) throws Throwable {
+    return primitiveHandler != null
+        ? dispatchPrimitive(call) != 0
+        : booleanOf(dispatch(call));
+  }
+
+  public char dispatchChar(Call call) throws Throwable {
+    return primitiveHandler != null
+        ? (char) dispatchPrimitive(call)
+        : charOf(dispatch(call));
+  }
+
+  public byte dispatchByte(Call call) throws Throwable {
+    return primitiveHandler != null
+        ? (byte) dispatchPrimitive(call)
+        : byteOf(dispatch(call));
+  }
+
+  public short dispatchShort(Call call) throws Throwable {
+    return primitiveHandler != null
+        ? (short) dispatchPrimitive(call)
+        : shortOf(dispatch(call));
+  }
+
+  public int dispatchInt(Call call) throws Throwable {
+    return primitiveHandler != null
+        ? (int) dispatchPrimitive(call)
+        : intOf(dispatch(call));
+  }
+
+  public long dispatchLong(Call call) throws Throwable {
+    return primitiveHandler != null
+        ? dispatchPrimitive(call)
+        : longOf(dispatch(call));
+  }
+
+  public float dispatchFloat(Call call) throws Throwable {
+    return primitiveHandler != null
+        ? Float.intBitsToFloat((int) dispatchPrimitive(call))
+        : floatOf(dispatch(call));
+  }
+
+  public double dispatchDouble(Call call) throws Throwable {
+    return primitiveHandler != null
+        ? Double.longBitsToDouble(dispatchPrimitive(call))
+        : doubleOf(dispatch(call));
+  }
+
+  public Object dispatchObject(Call call) throws Throwable {
+    try {
+      return primitiveHandler != null
+          ? primitiveHandler.handleObject(call)
+          : handler.handle(call.toInvocation());
+    } finally {
+      call.release();
+    }
+  }
+
+  private long dispatchPrimitive(Call call) throws Throwable {
+    try {
+      return primitiveHandler.handlePrimitive(call);
+    } finally {
+      call.release();
+    }
+  }
+
+  private Object dispatch(Call call) throws Throwable {
+    try {
+      return handler.handle(call.toInvocation());
+    } finally {
+      call.release();
+    }
+  }
+
+  private static boolean booleanOf(Object result) {
+    return result == null
+        ? false
+        : (Boolean) result;
+  }
+
+  private static char charOf(Object result) {
+    return result == null
+        ? 0
+        : (Character) result;
+  }
+
+  private static byte byteOf(Object result) {
+    return result == null
+        ? 0
+        : (Byte) result;
+  }
+
+  private static short shortOf(Object result) {
+    return result == null
+        ? 0
+        : (Short) result;
+  }
+
+  private static int intOf(Object result) {
+    return result == null
+        ? 0
+        : (Integer) result;
+  }
+
+  private static long longOf(Object result) {
+    return result == null
+        ? 0
+        : (Long) result;
+  }
+
+  private static float floatOf(Object result) {
+    return result == null
+        ? 0
+        : (Float) result;
+  }
+
+  private static double doubleOf(Object result) {
+    return result == null
+        ? 0
+        : (Double) result;
+  }
+}
@@ -0,0 +1,114 @@
+package org.testory.mock;
+
+import static org.testory.mock.ProxyGenerator.hostOf;
+import static org.testory.mock.ProxyGenerator.ownerOf;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import org.objenesis.instantiator.ObjectInstantiator;
+import org.objenesis.instantiator.sun.UnsafeFactoryInstantiator;
+import org.testory.common.Nullable;
+
+/**
+ * Proxy class generated by {@link ProxyGenerator}. Hidden classes cannot be instantiated by
+ * serialization constructors, so proxies are allocated by {@link UnsafeFactoryInstantiator}.
+ * Calls are forwarded to targets by {@link Forwarder} generated on first use. Methods that forwarder
+ * cannot access are invoked reflectively.
+ */
+class DispatchingProxyClass extends ProxyClass {
+  private final ObjectInstantiator instantiator;
+  private final Field dispatcher;
+  final Method[] methods;
+  final Class<?>[][] parameters;
+  private volatile Class<?>[] owners;
+  @Nullable
+  private Forwarder forwarder;
+
+  public DispatchingProxyClass(Typing typing, Class<?> type, List<Method> methods) {
+    super(typing, type);
+    this.instantiator = instantiatorOf(type);
+    this.methods = methods.toArray(new Method[0]);
+    this.parameters = new Class<?>[this.methods.length][];
+    for (int i = 0; i < this.methods.length; i++) {
+      parameters[i] = this.methods[i].getParameterTypes();
+    }
+    try {
+      this.dispatcher = type.getField(ProxyGenerator.dispatcherField());
+    } catch (NoSuchFieldException e) {
+      throw new Error(e);
+    }
+  }
+
+  private static <T> ObjectInstantiator instantiatorOf(Class<T> type) {
+    return new UnsafeFactoryInstantiator<T>(type);
+  }
+
+  public Object newProxy(Handler handler) {
+    Object proxy = instantiator.newInstance();
+    try {
+      dispatcher.set(proxy, new Dispatcher(handler, this));
+    } catch (IllegalAccessException e) {
+      throw new Error(e);
+    }
+    return proxy;
+  }
+
+  public Object forwardObject(Call call, Object target) throws Throwable {
+    return canForward(call.index(), target)
+        ? forwarder.forwardObject(call.index(), target, call)
+        : Invocations.invoke(call.toInvocation().on(target));
+  }
+
+  public long forwardPrimitive(Call call, Object target) throws Throwable {
+    return canForward(call.index(), target)
+        ? forwarder.forwardPrimitive(call.index(), target, call)
+        : Call.bitsOfBoxed(Invocations.invoke(call.toInvocation().on(target)));
+  }
+
+  public void forwardRepeatedly(Call call, Object target, int times) throws Throwable {
+    int index = call.index();
+    if (!canForward(index, target)) {
+      Invocation invocation = call.toInvocation().on(target);
+      for (int i = 0; i < times; i++) {
+        Invocations.invoke(invocation);
+      }
+    } else if (methods[index].getReturnType().isPrimitive()) {
+      for (int i = 0; i < times; i++) {
+        forwarder.forwardPrimitive(index, target, call);
+      }
+    } else {
+      for (int i = 0; i < times; i++) {
+        forwarder.forwardObject(index, target, call);
+      }
+    }
+  }
+
+  public boolean canForward(Call call, Object target) {
+    return canForward(call.index(), target);
+  }
+
+  private boolean canForward(int index, Object target) {
+    Class<?>[] ownersOfMethods = owners == null
+        ? generateForwarder()
+        : owners;
+    return forwarder != null && ownersOfMethods[index] != null
+        && ownersOfMethods[index].isInstance(target);
+  }
+
+  /** owners are published last, so forwarder is visible to threads that see owners */
+  private synchronized Class<?>[] generateForwarder() {
+    if (owners == null) {
+      Class<?>[] ownersOfMethods = new Class<?>[methods.length];
+      Class<?> host = hostOf(typing);
+      for (int i = 0; i < methods.length; i++) {
+        ownersOfMethods[i] = ownerOf(methods[i], typing, host);
+      }
+      forwarder = HiddenClassEngine.forwarderOf(typing, Arrays.asList(methods), ownersOfMethods);
+      owners = ownersOfMethods;
+    }
+    return owners;
+  }
+}
@@ -0,0 +1,17 @@
+package org.testory.mock;
+
+import org.testory.common.Nullable;
+
+/**
+ * Generates proxy classes for {@link Mocks}. Engines registered as {@link java.util.ServiceLoader}
+ * services take precedence over built-in ones.
+ */
+public interface Engine {
+  /**
+   * Returns proxy class extending superclass and implementing interfaces of <b>typing</b> or null
+   * if this engine cannot generate it. All classes of <b>typing</b> and testory are visible from
+   * <b>loader</b>. Proxy classes are cached by {@link Mocks}, so engine does not need to cache them.
+   */
+  @Nullable
+  ProxyClass proxyClass(Typing typing, ClassLoader loader);
+}
@@ -0,0 +1,12 @@
+package org.testory.mock;
+
+/**
+ * Forwards calls to target by direct invocation. Forwarders are generated by
+ * {@link ProxyGenerator} for proxy classes and select method by index of call. Not meant to be used
+ * directly.
+ */
+public interface Forwarder {
+  long forwardPrimitive(int index, Object target, Call call) throws Throwable;
+
+  Object forwardObject(int index, Object target, Call call) throws Throwable;
+}
@@ -0,0 +1,33 @@
+package org.testory.mock;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+class Hashes {
+  private Hashes() {}
+
+  public static String sha1(String text) {
+    try {
+      return sha1(text.getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new Error(e);
+    }
+  }
+
+  public static String sha1(byte[] bytes) {
+    try {
+      return hex(MessageDigest.getInstance("SHA-1").digest(bytes));
+    } catch (NoSuchAlgorithmException e) {
+      throw new Error(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder();
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,138 @@
+package org.testory.mock;
+
+import static org.testory.mock.ProxyGenerator.canGenerate;
+import static org.testory.mock.ProxyGenerator.generate;
+import static org.testory.mock.ProxyGenerator.generateForwarder;
+import static org.testory.mock.ProxyGenerator.hostOf;
+import static org.testory.mock.ProxyGenerator.methodsOf;
+import static org.testory.mock.ProxyGenerator.nameOf;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.testory.common.Nullable;
+
+/**
+ * Defines proxies generated by {@link ProxyGenerator} as hidden classes in package of superclass.
+ * Hidden classes need no bridging class loader and are unloaded as soon as they are unreachable.
+ * Java api is accessed reflectively, so engine returns null on platforms without hidden classes.
+ */
+class HiddenClassEngine implements Engine {
+  @Nullable
+  private static final Object lookup;
+  private static Method privateLookupIn, defineHiddenClass, lookupClass, isHidden;
+  private static Object noOptions;
+
+  static {
+    Object found;
+    try {
+      Class<?> methodHandles = Class.forName("java.lang.invoke.MethodHandles");
+      Class<?> lookupType = Class.forName("java.lang.invoke.MethodHandles$Lookup");
+      Class<?> optionType = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+      privateLookupIn = methodHandles.getMethod("privateLookupIn", Class.class, lookupType);
+      defineHiddenClass = lookupType.getMethod("defineHiddenClass", byte[].class, boolean.class,
+          Array.newInstance(optionType, 0).getClass());
+      lookupClass = lookupType.getMethod("lookupClass");
+      isHidden = Class.class.getMethod("isHidden");
+      noOptions = Array.newInstance(optionType, 0);
+      found = methodHandles.getMethod("lookup").invoke(null);
+    } catch (Exception e) {
+      found = null;
+    }
+    lookup = found;
+  }
+
+  public static boolean isSupported() {
+    return lookup != null;
+  }
+
+  public static boolean isHidden(Class<?> type) {
+    try {
+      return isSupported() && (Boolean) isHidden.invoke(type);
+    } catch (IllegalAccessException e) {
+      throw new Error(e);
+    } catch (InvocationTargetException e) {
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * Defines {@link Forwarder} for proxy of <b>typing</b> as hidden class in package of its host, or
+   * returns null if hidden classes are not supported.
+   */
+  @Nullable
+  public static Forwarder forwarderOf(Typing typing, List<Method> methods, Class<?>[] owners) {
+    if (!isSupported()) {
+      return null;
+    }
+    Class<?> host = hostOf(typing);
+    try {
+      Object hostLookup = privateLookupIn.invoke(null, host, lookup);
+      Object hiddenLookup = defineHiddenClass.invoke(hostLookup,
+          generateForwarder(nameOf(typing, host, "$$Forwarder"), methods, owners), true, noOptions);
+      return (Forwarder) ((Class<?>) lookupClass.invoke(hiddenLookup)).getConstructor()
+          .newInstance();
+    } catch (InvocationTargetException e) {
+      return null;
+    } catch (NoSuchMethodException e) {
+      throw new Error(e);
+    } catch (InstantiationException e) {
+      throw new Error(e);
+    } catch (IllegalAccessException e) {
+      throw new Error(e);
+    }
+  }
+
+  @Nullable
+  private final BytecodeCache cache;
+
+  public HiddenClassEngine(@Nullable BytecodeCache cache) {
+    this.cache = cache;
+  }
+
+  public HiddenClassEngine() {
+    this(null);
+  }
+
+  @Nullable
+  public ProxyClass proxyClass(Typing typing, ClassLoader loader) {
+    if (!isSupported()) {
+      return null;
+    }
+    Class<?> host = hostOf(typing);
+    List<Method> methods = methodsOf(typing, host);
+    if (!canGenerate(typing, host, methods)) {
+      return null;
+    }
+    Class<?> type;
+    try {
+      Object hostLookup = privateLookupIn.invoke(null, host, lookup);
+      Object hiddenLookup = defineHiddenClass.invoke(hostLookup, bytecodeOf(typing, host, methods),
+          true, noOptions);
+      type = (Class<?>) lookupClass.invoke(hiddenLookup);
+    } catch (IllegalAccessException e) {
+      throw new Error(e);
+    } catch (InvocationTargetException e) {
+      return null;
+    }
+    return new DispatchingProxyClass(typing, type, methods);
+  }
+
+  private byte[] bytecodeOf(Typing typing, Class<?> host, List<Method> methods) {
+    String key = cache == null
+        ? null
+        : cache.keyOf("hidden", typing);
+    byte[] bytecode = key == null
+        ? null
+        : cache.read(key);
+    if (bytecode == null) {
+      bytecode = generate(nameOf(typing, host, "$$Mock"), typing, methods);
+      if (key != null) {
+        cache.write(key, bytecode);
+      }
+    }
+    return bytecode;
+  }
+}
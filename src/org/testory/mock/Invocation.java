@@ -1,80 +1,117 @@
 package org.testory.mock;
 
 import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
 import static org.testory.common.Checks.checkArgument;
 import static org.testory.common.Checks.checkNotNull;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Invocation {
+  private static final MethodCache<Validator> validators = new MethodCache<Validator>() {
+    protected Validator compute(Method method) {
+      return new Validator(method);
+    }
+  };
+  private static final Map<Class<?>, Set<Class<?>>> convertibleTo = convertibleTo();
+
   public final Method method;
   public final Object instance;
   public final List<Object> arguments;
+  private final Object[] argumentsArray;
 
-  private Invocation(Method method, Object instance, List<Object> arguments) {
+  private Invocation(Method method, Object instance, Object[] arguments) {
     this.method = method;
     this.instance = instance;
-    this.arguments = arguments;
+    this.arguments = unmodifiableList(Arrays.asList(arguments));
+    this.argumentsArray = arguments;
   }
 
   public static Invocation invocation(Method method, Object instance, List<?> arguments) {
     checkNotNull(instance);
-    checkArgument(!Modifier.isStatic(method.getModifiers()));
-    checkArgument(method.getDeclaringClass().isInstance(instance));
-
-    List<Object> args = unmodifiableList(new ArrayList<Object>(arguments));
-    Class<?>[] parameters = method.getParameterTypes();
-    checkArgument(parameters.length == args.size());
-    for (int i = 0; i < parameters.length; i++) {
-      checkArgument(isAssignableTo(parameters[i], args.get(i)));
-    }
+    Object[] args = arguments.toArray();
+    validators.get(method).validate(instance, args);
     return new Invocation(method, instance, args);
   }
 
-  private static boolean isAssignableTo(Class<?> type, Object instance) {
-    return type.isPrimitive()
-        ? isConvertibleTo(type, instance)
-        : instance == null || type.isAssignableFrom(instance.getClass());
+  /**
+   * Creates invocation without validation, for proxies that guarantee types of <b>instance</b> and
+   * <b>arguments</b>. Array of arguments is not copied, so it must not be modified afterwards.
+   */
+  static Invocation trustedInvocation(Method method, Object instance, Object[] arguments) {
+    return new Invocation(method, instance, arguments);
   }
 
-  private static boolean isConvertibleTo(Class<?> type, Object instance) {
-    try {
-      Method method = PrimitiveMethods.class.getDeclaredMethod("method", type);
-      method.setAccessible(true);
-      method.invoke(null, instance);
-      return true;
-    } catch (IllegalArgumentException e) {
-      return false;
-    } catch (NoSuchMethodException e) {
-      throw new Error(e);
-    } catch (IllegalAccessException e) {
-      throw new Error(e);
-    } catch (InvocationTargetException e) {
-      throw new Error(e);
-    }
+  /**
+   * Same invocation on other <b>instance</b>. Only instance is validated, because arguments were
+   * validated when this invocation was created.
+   */
+  Invocation on(Object instance) {
+    checkNotNull(instance);
+    checkArgument(method.getDeclaringClass().isInstance(instance));
+    return new Invocation(method, instance, argumentsArray);
   }
 
-  @SuppressWarnings("unused")
-  private static class PrimitiveMethods {
-    private static void method(byte argument) {}
-
-    private static void method(short argument) {}
+  /**
+   * Array backing {@link #arguments}, shared to save copying, so it must not be modified.
+   */
+  Object[] argumentsArray() {
+    return argumentsArray;
+  }
 
-    private static void method(int argument) {}
+  private static class Validator {
+    private final Class<?> declaringClass;
+    private final boolean isStatic;
+    private final Class<?>[] parameters;
 
-    private static void method(long argument) {}
+    public Validator(Method method) {
+      declaringClass = method.getDeclaringClass();
+      isStatic = Modifier.isStatic(method.getModifiers());
+      parameters = method.getParameterTypes();
+    }
 
-    private static void method(float argument) {}
+    public void validate(Object instance, Object[] arguments) {
+      checkArgument(!isStatic);
+      checkArgument(declaringClass.isInstance(instance));
+      checkArgument(parameters.length == arguments.length);
+      for (int i = 0; i < parameters.length; i++) {
+        checkArgument(isAssignableTo(parameters[i], arguments[i]));
+      }
+    }
+  }
 
-    private static void method(double argument) {}
+  private static boolean isAssignableTo(Class<?> type, Object instance) {
+    return type.isPrimitive()
+        ? instance != null && convertibleTo.get(type).contains(instance.getClass())
+        : instance == null || type.isAssignableFrom(instance.getClass());
+  }
 
-    private static void method(boolean argument) {}
+  /** wrappers accepted by primitive parameters, as unboxed and widened by reflection */
+  private static Map<Class<?>, Set<Class<?>>> convertibleTo() {
+    Map<Class<?>, Set<Class<?>>> map = new HashMap<Class<?>, Set<Class<?>>>();
+    map.put(boolean.class, wrappers(Boolean.class));
+    map.put(char.class, wrappers(Character.class));
+    map.put(byte.class, wrappers(Byte.class));
+    map.put(short.class, wrappers(Short.class, Byte.class));
+    map.put(int.class, wrappers(Integer.class, Short.class, Byte.class, Character.class));
+    map.put(long.class, wrappers(Long.class, Integer.class, Short.class, Byte.class,
+        Character.class));
+    map.put(float.class, wrappers(Float.class, Long.class, Integer.class, Short.class, Byte.class,
+        Character.class));
+    map.put(double.class, wrappers(Double.class, Float.class, Long.class, Integer.class,
+        Short.class, Byte.class, Character.class));
+    return unmodifiableMap(map);
+  }
 
-    private static void method(char argument) {}
+  private static Set<Class<?>> wrappers(Class<?>... wrappers) {
+    return new HashSet<Class<?>>(Arrays.asList(wrappers));
   }
 
   public boolean equals(Object object) {
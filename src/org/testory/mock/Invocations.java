@@ -1,25 +1,31 @@
 package org.testory.mock;
 
-import static org.testory.mock.Invocation.invocation;
-
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 
 public class Invocations {
+  private static final MethodCache<Method> accessibleMethods = new MethodCache<Method>() {
+    protected Method compute(final Method method) {
+      AccessController.doPrivileged(new PrivilegedAction<Void>() {
+        public Void run() {
+          method.setAccessible(true);
+          return null;
+        }
+      });
+      return method;
+    }
+  };
+
+  /**
+   * Invokes method of <b>invocation</b> on its instance. Accessibility of method is resolved once
+   * and arguments are not copied.
+   */
   public static Object invoke(Invocation invocation) throws Throwable {
-    final Method method = invocation.method;
-    Object instance = invocation.instance;
-    Object[] arguments = invocation.arguments.toArray();
-    AccessController.doPrivileged(new PrivilegedAction<Void>() {
-      public Void run() {
-        method.setAccessible(true);
-        return null;
-      }
-    });
+    Method method = accessibleMethods.get(invocation.method);
     try {
-      return method.invoke(instance, arguments);
+      return method.invoke(invocation.instance, invocation.argumentsArray());
     } catch (IllegalAccessException e) {
       throw new Error(e);
     } catch (InvocationTargetException e) {
@@ -28,6 +34,6 @@ public class Invocations {
   }
 
   public static Invocation on(Object instance, Invocation invocation) {
-    return invocation(invocation.method, instance, invocation.arguments);
+    return invocation.on(instance);
   }
 }
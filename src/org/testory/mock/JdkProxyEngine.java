@@ -0,0 +1,84 @@
+package org.testory.mock;
+
+import static org.testory.mock.Invocation.trustedInvocation;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.testory.common.Nullable;
+
+/**
+ * Generates {@link Proxy} classes for typings without superclass other than {@link Object}.
+ */
+class JdkProxyEngine implements Engine {
+  /** handles proxy created only to get its class, because Proxy.getProxyClass is deprecated */
+  private static final InvocationHandler unused = new InvocationHandler() {
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      throw new UnsupportedOperationException();
+    }
+  };
+
+  @Nullable
+  public ProxyClass proxyClass(Typing typing, ClassLoader loader) {
+    if (typing.superclass != Object.class) {
+      return null;
+    }
+    Class<?> type;
+    try {
+      type = Proxy.newProxyInstance(loader, typing.interfaces.toArray(new Class<?>[0]), unused)
+          .getClass();
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    return new JdkProxyClass(typing, type);
+  }
+
+  private static class JdkProxyClass extends ProxyClass {
+    private final Constructor<?> constructor;
+
+    public JdkProxyClass(Typing typing, Class<?> type) {
+      super(typing, type);
+      try {
+        this.constructor = type.getConstructor(InvocationHandler.class);
+      } catch (NoSuchMethodException e) {
+        throw new Error(e);
+      }
+    }
+
+    public Object newProxy(Handler handler) {
+      try {
+        return constructor.newInstance(asInvocationHandler(handler));
+      } catch (InstantiationException e) {
+        throw new Error(e);
+      } catch (IllegalAccessException e) {
+        throw new Error(e);
+      } catch (InvocationTargetException e) {
+        throw new Error(e);
+      }
+    }
+  }
+
+  private static InvocationHandler asInvocationHandler(final Handler handler) {
+    return new InvocationHandler() {
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result = handler.handle(trustedInvocation(method, proxy, args == null
+            ? new Object[0]
+            : args));
+        return result == null
+            ? zeroOf(method.getReturnType())
+            : result;
+      }
+    };
+  }
+
+  @Nullable
+  private static Object zeroOf(Class<?> type) {
+    return type.isPrimitive() && type != void.class
+        ? Array.get(Array.newInstance(type, 1), 0)
+        : null;
+  }
+}
@@ -0,0 +1,52 @@
+package org.testory.mock;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.testory.common.ConcurrentWeakMap;
+
+/**
+ * Values computed once per method. Values are cached per declaring class and held softly, so they
+ * do not prevent unloading of classes. Finding cached value takes no lock. Threads racing to compute
+ * same value may compute it more than once, but agree on one of them.
+ */
+abstract class MethodCache<V> {
+  private final ConcurrentWeakMap<Class<?>, SoftReference<ConcurrentMap<Method, V>>> values = new ConcurrentWeakMap<Class<?>, SoftReference<ConcurrentMap<Method, V>>>();
+
+  protected abstract V compute(Method method);
+
+  public V get(Method method) {
+    ConcurrentMap<Method, V> valuesOfClass = valuesOf(method.getDeclaringClass());
+    V value = valuesOfClass.get(method);
+    if (value == null) {
+      value = compute(method);
+      V computed = valuesOfClass.putIfAbsent(method, value);
+      if (computed != null) {
+        value = computed;
+      }
+    }
+    return value;
+  }
+
+  private ConcurrentMap<Method, V> valuesOf(Class<?> type) {
+    while (true) {
+      SoftReference<ConcurrentMap<Method, V>> reference = values.get(type);
+      ConcurrentMap<Method, V> valuesOfClass = reference == null
+          ? null
+          : reference.get();
+      if (valuesOfClass != null) {
+        return valuesOfClass;
+      }
+      valuesOfClass = new ConcurrentHashMap<Method, V>();
+      SoftReference<ConcurrentMap<Method, V>> created = new SoftReference<ConcurrentMap<Method, V>>(valuesOfClass);
+      boolean registered = reference == null
+          ? values.putIfAbsent(type, created) == null
+          : values.replace(type, reference, created);
+      if (registered) {
+        return valuesOfClass;
+      }
+    }
+  }
+}
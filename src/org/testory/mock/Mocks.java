@@ -1,33 +1,68 @@
 package org.testory.mock;
 
+import static java.util.Collections.unmodifiableList;
 import static org.testory.common.Checks.checkArgument;
 import static org.testory.common.Checks.checkNotNull;
-import static org.testory.mock.Invocation.invocation;
 import static org.testory.mock.Typing.typing;
 
-import java.io.Serializable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-import net.sf.cglib.core.CodeGenerationException;
-import net.sf.cglib.proxy.Callback;
-import net.sf.cglib.proxy.CallbackFilter;
-import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.Factory;
-import net.sf.cglib.proxy.MethodInterceptor;
-import net.sf.cglib.proxy.MethodProxy;
-import net.sf.cglib.proxy.NoOp;
 
-import org.objenesis.ObjenesisStd;
+import org.testory.common.ConcurrentWeakMap;
+import org.testory.common.Nullable;
 
 public class Mocks {
+  private static final ConcurrentWeakMap<ClassLoader, ConcurrentMap<String, SoftReference<ProxyClass>>> proxyClasses = new ConcurrentWeakMap<ClassLoader, ConcurrentMap<String, SoftReference<ProxyClass>>>();
+  private static final ConcurrentWeakMap<ClassLoader, ConcurrentMap<String, FutureTask<ProxyClass>>> generatingProxyClasses = new ConcurrentWeakMap<ClassLoader, ConcurrentMap<String, FutureTask<ProxyClass>>>();
+  /** guarded by itself */
+  private static final Set<Reference<Class<?>>> liveProxyClasses = new HashSet<Reference<Class<?>>>();
+  private static final ReferenceQueue<Class<?>> unloadedProxyClasses = new ReferenceQueue<Class<?>>();
+  private static final List<Engine> engines = engines();
+  private static Executor warmUpExecutor;
+  private static final AtomicLong proxyClassHits = new AtomicLong();
+  private static final AtomicLong proxyClassMisses = new AtomicLong();
+
   private Mocks() {}
 
+  private static List<Engine> engines() {
+    List<Engine> engines = new ArrayList<Engine>();
+    for (Engine engine : ServiceLoader.load(Engine.class, Mocks.class.getClassLoader())) {
+      engines.add(engine);
+    }
+    engines.add(new PregeneratedEngine());
+    engines.add(new JdkProxyEngine());
+    engines.add(new HiddenClassEngine(BytecodeCache.configuredCache()));
+    engines.add(new CglibEngine(BytecodeCache.configuredCache()));
+    return unmodifiableList(engines);
+  }
+
   /**
    * Creates new mock instance that handles invocations with specified <b>handler</b> and extends
    * superclass and implements interfaces of <b>typing</b>.
@@ -41,46 +76,281 @@ public class Mocks {
    * <li>If <b>handler</b> returns null and handled method return type is primitive, then null will
    * be replaced by binary zero.</li>
    * <li>{@link Object#finalize()} is never intercepted</li>
+   * <li>Proxy classes are generated by first {@link Engine} able to generate them.</li>
+   * <li>If <b>typing</b> has no superclass other than {@link Object}, mock is a
+   * {@link java.lang.reflect.Proxy}. Checked throwable thrown by <b>handler</b> and not declared
+   * by handled method is then wrapped in {@link java.lang.reflect.UndeclaredThrowableException}.</li>
    * </ul>
    */
   public static Object mock(Typing typing, Handler handler) {
     checkNotNull(typing);
     checkNotNull(handler);
-    return newMockByCglib(tryAsMockable(typing), handler);
-  }
-
-  private static Object newMockByCglib(Typing typing, final Handler handler) {
-    Enhancer enhancer = new Enhancer() {
-      /** includes all constructors */
-      protected void filterConstructors(Class sc, List constructors) {}
-    };
-    enhancer.setClassLoader(classLoadersFor(typing));
-    enhancer.setUseFactory(true);
-    enhancer.setSuperclass(typing.superclass);
-    enhancer.setInterfaces(typing.interfaces.toArray(new Class[0]));
-    enhancer.setCallbackTypes(new Class[] { MethodInterceptor.class, NoOp.class });
-    enhancer.setCallbackFilter(new CallbackFilter() {
-      /** ignores bridge methods */
-      public int accept(Method method) {
-        return method.isBridge()
-            ? 1
-            : 0;
+    return proxyClassFor(tryAsMockable(typing)).newProxy(handler);
+  }
+
+  /**
+   * Writes jar with proxy classes of <b>typings</b> generated ahead of time. If jar is on classpath,
+   * mocks use these classes instead of generating them, as long as typings did not change since.
+   */
+  public static void pregenerate(Iterable<Typing> typings, OutputStream jar) throws IOException {
+    PregeneratedEngine.write(typings, jar);
+  }
+
+  /**
+   * Number of mocks which reused already generated proxy class.
+   */
+  public static long proxyClassHits() {
+    return proxyClassHits.get();
+  }
+
+  /**
+   * Number of mocks which required generating new proxy class.
+   */
+  public static long proxyClassMisses() {
+    return proxyClassMisses.get();
+  }
+
+  /**
+   * Number of generated proxy classes that are not yet unloaded.
+   */
+  public static int liveProxyClasses() {
+    synchronized (liveProxyClasses) {
+      expungeUnloadedProxyClasses();
+      return liveProxyClasses.size();
+    }
+  }
+
+  /**
+   * Starts generating proxy classes of <b>typings</b> in background threads, so they are ready when
+   * mocks of these typings are created. Mock of typing, which proxy class is still being generated,
+   * waits for it instead of generating it again. Failures are reported when mock is created.
+   */
+  public static void warmUp(Iterable<Typing> typings) {
+    checkNotNull(typings);
+    List<FutureTask<ProxyClass>> tasks = new ArrayList<FutureTask<ProxyClass>>();
+    for (Typing typing : typings) {
+      Typing mockable = tryAsMockable(checkNotNull(typing));
+      ClassLoader loader = cacheLoaderFor(mockable);
+      String name = nameOf(mockable);
+      if (cachedProxyClass(mockable, name, loader) == null) {
+        FutureTask<ProxyClass> task = newGenerating(mockable, name, loader);
+        if (generatingProxyClasses(loader).putIfAbsent(name, task) == null) {
+          proxyClassMisses.incrementAndGet();
+          tasks.add(task);
+        }
+      }
+    }
+    if (tasks.size() == 1) {
+      tasks.get(0).run();
+    } else {
+      for (FutureTask<ProxyClass> task : tasks) {
+        warmUpExecutor().execute(task);
+      }
+    }
+  }
+
+  /**
+   * Finds cached proxy class without taking any lock. Otherwise registers task generating it, so
+   * other threads wait for it instead of generating it again.
+   */
+  private static ProxyClass proxyClassFor(Typing typing) {
+    ClassLoader loader = cacheLoaderFor(typing);
+    String name = nameOf(typing);
+    ProxyClass proxyClass = cachedProxyClass(typing, name, loader);
+    if (proxyClass != null) {
+      proxyClassHits.incrementAndGet();
+      return proxyClass;
+    }
+    FutureTask<ProxyClass> task = newGenerating(typing, name, loader);
+    FutureTask<ProxyClass> generating = generatingProxyClasses(loader).putIfAbsent(name, task);
+    if (generating == null) {
+      proxyClassMisses.incrementAndGet();
+      task.run();
+    } else {
+      proxyClassHits.incrementAndGet();
+      task = generating;
+    }
+    proxyClass = getUninterruptibly(task);
+    return proxyClass.typing.equals(typing)
+        ? proxyClass
+        : newProxyClass(typing);
+  }
+
+  /**
+   * Miss is counted when task is registered. Task looks into cache again, because other thread
+   * could finish generating after cache was missed, but before task was registered, and then the
+   * miss is counted as hit. Proxy class is cached before task is unregistered, so
+   * no thread misses both. Proxy classes are held softly, so they can be unloaded together with
+   * their class loaders. Cache is keyed by names, because strong reference to typing could prevent
+   * unloading of its loader.
+   */
+  private static FutureTask<ProxyClass> newGenerating(final Typing typing, final String name,
+      final ClassLoader loader) {
+    return new FutureTask<ProxyClass>(new Callable<ProxyClass>() {
+      public ProxyClass call() {
+        try {
+          ProxyClass proxyClass = cachedProxyClass(typing, name, loader);
+          if (proxyClass != null) {
+            proxyClassMisses.decrementAndGet();
+            proxyClassHits.incrementAndGet();
+            return proxyClass;
+          }
+          proxyClass = newProxyClass(typing);
+          proxyClassesIn(loader).put(name, new SoftReference<ProxyClass>(proxyClass));
+          synchronized (liveProxyClasses) {
+            expungeUnloadedProxyClasses();
+            liveProxyClasses.add(new WeakReference<Class<?>>(proxyClass.type, unloadedProxyClasses));
+          }
+          return proxyClass;
+        } finally {
+          generatingProxyClasses(loader).remove(name);
+        }
       }
     });
-    Class<?> proxyClass;
+  }
+
+  @Nullable
+  private static ProxyClass cachedProxyClass(Typing typing, String name, ClassLoader loader) {
+    SoftReference<ProxyClass> reference = proxyClassesIn(loader).get(name);
+    ProxyClass proxyClass = reference == null
+        ? null
+        : reference.get();
+    return proxyClass != null && proxyClass.typing.equals(typing)
+        ? proxyClass
+        : null;
+  }
+
+  private static ConcurrentMap<String, SoftReference<ProxyClass>> proxyClassesIn(ClassLoader loader) {
+    ConcurrentMap<String, SoftReference<ProxyClass>> proxyClassesInLoader = proxyClasses.get(loader);
+    if (proxyClassesInLoader == null) {
+      ConcurrentMap<String, SoftReference<ProxyClass>> created = new ConcurrentHashMap<String, SoftReference<ProxyClass>>();
+      proxyClassesInLoader = proxyClasses.putIfAbsent(loader, created);
+      if (proxyClassesInLoader == null) {
+        proxyClassesInLoader = created;
+      }
+    }
+    return proxyClassesInLoader;
+  }
+
+  private static ConcurrentMap<String, FutureTask<ProxyClass>> generatingProxyClasses(
+      ClassLoader loader) {
+    ConcurrentMap<String, FutureTask<ProxyClass>> generatingInLoader = generatingProxyClasses.get(loader);
+    if (generatingInLoader == null) {
+      ConcurrentMap<String, FutureTask<ProxyClass>> created = new ConcurrentHashMap<String, FutureTask<ProxyClass>>();
+      generatingInLoader = generatingProxyClasses.putIfAbsent(loader, created);
+      if (generatingInLoader == null) {
+        generatingInLoader = created;
+      }
+    }
+    return generatingInLoader;
+  }
+
+  private static ProxyClass getUninterruptibly(FutureTask<ProxyClass> task) {
+    boolean interrupted = false;
     try {
-      proxyClass = enhancer.createClass();
-    } catch (CodeGenerationException e) {
-      throw new IllegalArgumentException(e);
+      while (true) {
+        try {
+          return task.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          } else {
+            throw new Error(cause);
+          }
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** bounded by number of processors, threads are daemons that die when idle */
+  private static synchronized Executor warmUpExecutor() {
+    if (warmUpExecutor == null) {
+      int threads = Runtime.getRuntime().availableProcessors();
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "testory-warm-up");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+      executor.allowCoreThreadTimeOut(true);
+      warmUpExecutor = executor;
+    }
+    return warmUpExecutor;
+  }
+
+  private static void expungeUnloadedProxyClasses() {
+    Reference<? extends Class<?>> reference;
+    while ((reference = unloadedProxyClasses.poll()) != null) {
+      liveProxyClasses.remove(reference);
+    }
+  }
+
+  static String nameOf(Typing typing) {
+    List<String> interfaces = new ArrayList<String>();
+    for (Class<?> interfacee : typing.interfaces) {
+      interfaces.add(interfacee.getName());
     }
+    Collections.sort(interfaces);
+    return typing.superclass.getName() + interfaces;
+  }
 
-    Factory proxy = (Factory) new ObjenesisStd().newInstance(proxyClass);
-    proxy.setCallbacks(new Callback[] { asMethodInterceptor(handler), new SerializableNoOp() });
-    return proxy;
+  /** bridge is not referenced by hidden classes, so it is unloaded if no other engine used it */
+  private static ProxyClass newProxyClass(Typing typing) {
+    ClassLoader loader = classLoadersFor(typing);
+    for (Engine engine : engines) {
+      ProxyClass proxyClass = engine.proxyClass(typing, loader);
+      if (proxyClass != null) {
+        return proxyClass;
+      }
+    }
+    List<String> tried = new ArrayList<String>();
+    for (Engine engine : engines) {
+      tried.add(engine.getClass().getName());
+    }
+    throw new IllegalArgumentException("no engine generated proxy class of " + typing + ", tried "
+        + tried);
   }
 
   private static Typing tryAsMockable(Typing typing) {
-    return tryWithoutFactory(tryWithoutObjectBecauseOfCglibBug(typing));
+    return tryWithoutProxy(tryWithoutHidden(tryWithoutFactory(typing)));
+  }
+
+  /** hidden classes cannot be extended */
+  private static Typing tryWithoutHidden(Typing typing) {
+    return HiddenClassEngine.isHidden(typing.superclass)
+        ? withoutSuperclass(typing)
+        : typing;
+  }
+
+  private static Typing withoutSuperclass(Typing typing) {
+    Set<Class<?>> interfaces = new HashSet<Class<?>>();
+    interfaces.addAll(Arrays.asList(typing.superclass.getInterfaces()));
+    interfaces.addAll(typing.interfaces);
+    return typing(typing.superclass.getSuperclass(), interfaces);
+  }
+
+  private static Typing tryWithoutProxy(Typing typing) {
+    return Proxy.isProxyClass(typing.superclass)
+        ? withoutProxy(typing)
+        : typing;
+  }
+
+  private static Typing withoutProxy(Typing typing) {
+    Set<Class<?>> interfaces = new HashSet<Class<?>>();
+    interfaces.addAll(Arrays.asList(typing.superclass.getInterfaces()));
+    interfaces.addAll(typing.interfaces);
+    return typing(Object.class, interfaces);
   }
 
   private static Typing tryWithoutFactory(Typing typing) {
@@ -98,11 +368,16 @@ public class Mocks {
     return typing(superclass, interfaces);
   }
 
-  private static Typing tryWithoutObjectBecauseOfCglibBug(Typing typing) {
-    class MockableObject {}
-    return typing.superclass == Object.class
-        ? typing(MockableObject.class, typing.interfaces)
-        : typing;
+  /**
+   * Hidden classes are defined in package of superclass, so proxy class is cached under its loader
+   * and no bridge is needed to find it. Other proxy classes are cached under bridge they are
+   * defined in.
+   */
+  private static ClassLoader cacheLoaderFor(Typing typing) {
+    ClassLoader loader = typing.superclass.getClassLoader();
+    return HiddenClassEngine.isSupported() && typing.superclass != Object.class && loader != null
+        ? loader
+        : classLoadersFor(typing);
   }
 
   private static ClassLoader classLoadersFor(Typing typing) {
@@ -112,45 +387,10 @@ public class Mocks {
     loaders.add(Thread.currentThread().getContextClassLoader());
     loaders.remove(null);
     checkArgument(!loaders.isEmpty());
-    return chain(loaders);
+    return ClassLoaders.chain(loaders);
   }
 
-  private static ClassLoader chain(Iterable<ClassLoader> loaders) {
-    ClassLoader loader;
-    Iterator<ClassLoader> iterator = loaders.iterator();
-    loader = iterator.next();
-    while (iterator.hasNext()) {
-      loader = chain(loader, iterator.next());
-    }
-    return loader;
-  }
-
-  private static ClassLoader chain(ClassLoader first, final ClassLoader second) {
-    return new ClassLoader(first) {
-      protected Class<?> findClass(String name) throws ClassNotFoundException {
-        return second.loadClass(name);
-      }
-    };
-  }
-
-  private static MethodInterceptor asMethodInterceptor(final Handler handler) {
-    return new MethodInterceptor() {
-      public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy)
-          throws Throwable {
-        return isFinalize(method)
-            ? null
-            : handler.handle(invocation(method, obj, Arrays.asList(args)));
-      }
-    };
-  }
-
-  private static boolean isFinalize(Method method) {
+  static boolean isFinalize(Method method) {
     return method.getName().equals("finalize") && method.getParameterTypes().length == 0;
   }
-
-  private static class SerializableNoOp implements NoOp, Serializable {
-    private static final long serialVersionUID = 4961170565306875478L;
-
-    private SerializableNoOp() {}
-  }
 }
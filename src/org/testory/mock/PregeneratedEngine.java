@@ -0,0 +1,87 @@
+package org.testory.mock;
+
+import static org.testory.mock.ProxyGenerator.canGenerate;
+import static org.testory.mock.ProxyGenerator.fingerprintField;
+import static org.testory.mock.ProxyGenerator.fingerprintOf;
+import static org.testory.mock.ProxyGenerator.generate;
+import static org.testory.mock.ProxyGenerator.hostOf;
+import static org.testory.mock.ProxyGenerator.methodsOf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.testory.common.Nullable;
+
+/**
+ * Finds proxy classes generated ahead of time by {@link #write(Iterable, OutputStream)}, which are
+ * loaded from classpath by class loader of superclass. Proxy class is used only if typing did not
+ * change since it was generated, otherwise next engine generates it at runtime.
+ */
+class PregeneratedEngine implements Engine {
+  @Nullable
+  public ProxyClass proxyClass(Typing typing, ClassLoader loader) {
+    Class<?> host = hostOf(typing);
+    Class<?> type;
+    try {
+      type = Class.forName(nameOf(typing).replace('/', '.'), false, host.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (LinkageError e) {
+      return null;
+    }
+    List<Method> methods = methodsOf(typing, host);
+    return isGeneratedFor(type, typing, host, methods)
+        ? new DispatchingProxyClass(typing, type, methods)
+        : null;
+  }
+
+  /**
+   * Writes jar with proxy classes of <b>typings</b>. Typings that cannot be generated are skipped.
+   */
+  public static void write(Iterable<Typing> typings, OutputStream output) throws IOException {
+    JarOutputStream jar = new JarOutputStream(output);
+    Set<String> names = new HashSet<String>();
+    for (Typing typing : typings) {
+      Class<?> host = hostOf(typing);
+      List<Method> methods = methodsOf(typing, host);
+      String name = nameOf(typing);
+      if (canGenerate(typing, host, methods) && names.add(name)) {
+        jar.putNextEntry(new JarEntry(name + ".class"));
+        jar.write(generate(name, typing, methods));
+        jar.closeEntry();
+      }
+    }
+    jar.finish();
+  }
+
+  private static String nameOf(Typing typing) {
+    return ProxyGenerator.nameOf(typing, hostOf(typing),
+        "$$TestoryMock$$" + Integer.toHexString(Mocks.nameOf(typing).hashCode()));
+  }
+
+  private static boolean isGeneratedFor(Class<?> type, Typing typing, Class<?> host,
+      List<Method> methods) {
+    return type.getClassLoader() == host.getClassLoader()
+        && type.getSuperclass() == typing.superclass
+        && new HashSet<Class<?>>(Arrays.asList(type.getInterfaces())).equals(typing.interfaces)
+        && fingerprintOf(methods).equals(storedFingerprintOf(type));
+  }
+
+  @Nullable
+  private static String storedFingerprintOf(Class<?> type) {
+    try {
+      return (String) type.getField(fingerprintField()).get(null);
+    } catch (NoSuchFieldException e) {
+      return null;
+    } catch (IllegalAccessException e) {
+      throw new Error(e);
+    }
+  }
+}
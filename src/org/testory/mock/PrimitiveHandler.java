@@ -0,0 +1,36 @@
+package org.testory.mock;
+
+import org.testory.common.Nullable;
+
+/**
+ * Handler that neither boxes primitive arguments nor primitive results. Proxies generated by
+ * {@link ProxyGenerator} pass {@link Call} reused by current thread, so handling does not allocate.
+ * Proxies generated otherwise pass {@link Invocation}, which is converted to new call.
+ */
+public abstract class PrimitiveHandler implements Handler {
+  /**
+   * Handles method returning primitive or void. Result is converted to return type of method as by
+   * primitive narrowing, float and double are read from bits created by {@link Call#bitsOf(float)}
+   * and {@link Call#bitsOf(double)}, boolean is true unless zero.
+   */
+  public abstract long handlePrimitive(Call call) throws Throwable;
+
+  /**
+   * Handles method returning reference.
+   */
+  @Nullable
+  public abstract Object handleObject(Call call) throws Throwable;
+
+  @Nullable
+  public final Object handle(Invocation invocation) throws Throwable {
+    Call call = Call.of(invocation);
+    Class<?> type = invocation.method.getReturnType();
+    if (!type.isPrimitive()) {
+      return handleObject(call);
+    }
+    long bits = handlePrimitive(call);
+    return type == void.class
+        ? null
+        : Call.boxedOf(type, bits);
+  }
+}
@@ -0,0 +1,22 @@
+package org.testory.mock;
+
+import static org.testory.common.Checks.checkNotNull;
+
+/**
+ * Generated class of proxies, which extend superclass and implement interfaces of <b>typing</b>.
+ */
+public abstract class ProxyClass {
+  public final Typing typing;
+  public final Class<?> type;
+
+  protected ProxyClass(Typing typing, Class<?> type) {
+    this.typing = checkNotNull(typing);
+    this.type = checkNotNull(type);
+  }
+
+  /**
+   * Creates new proxy, without invoking any constructor, that handles invocations with
+   * <b>handler</b> as described in {@link Mocks#mock(Typing, Handler)}.
+   */
+  public abstract Object newProxy(Handler handler);
+}
@@ -0,0 +1,433 @@
+package org.testory.mock;
+
+import static net.sf.cglib.asm.Opcodes.ACC_PROTECTED;
+import static net.sf.cglib.asm.Opcodes.ACC_PUBLIC;
+import static net.sf.cglib.asm.Opcodes.ACC_STATIC;
+import static net.sf.cglib.asm.Opcodes.ACC_FINAL;
+import static net.sf.cglib.asm.Opcodes.ACC_SUPER;
+import static net.sf.cglib.asm.Opcodes.ACC_SYNTHETIC;
+import static net.sf.cglib.asm.Opcodes.ALOAD;
+import static net.sf.cglib.asm.Opcodes.ARETURN;
+import static net.sf.cglib.asm.Opcodes.ATHROW;
+import static net.sf.cglib.asm.Opcodes.BIPUSH;
+import static net.sf.cglib.asm.Opcodes.CHECKCAST;
+import static net.sf.cglib.asm.Opcodes.DUP;
+import static net.sf.cglib.asm.Opcodes.GETFIELD;
+import static net.sf.cglib.asm.Opcodes.I2L;
+import static net.sf.cglib.asm.Opcodes.ICONST_0;
+import static net.sf.cglib.asm.Opcodes.ILOAD;
+import static net.sf.cglib.asm.Opcodes.INVOKEINTERFACE;
+import static net.sf.cglib.asm.Opcodes.INVOKESPECIAL;
+import static net.sf.cglib.asm.Opcodes.INVOKESTATIC;
+import static net.sf.cglib.asm.Opcodes.INVOKEVIRTUAL;
+import static net.sf.cglib.asm.Opcodes.IRETURN;
+import static net.sf.cglib.asm.Opcodes.LCONST_0;
+import static net.sf.cglib.asm.Opcodes.LRETURN;
+import static net.sf.cglib.asm.Opcodes.NEW;
+import static net.sf.cglib.asm.Opcodes.RETURN;
+import static net.sf.cglib.asm.Opcodes.SIPUSH;
+import static net.sf.cglib.asm.Opcodes.V1_5;
+import static org.testory.mock.Mocks.isFinalize;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.sf.cglib.asm.ClassWriter;
+import net.sf.cglib.asm.Label;
+import net.sf.cglib.asm.MethodVisitor;
+import net.sf.cglib.asm.Type;
+
+import org.testory.common.Nullable;
+
+/**
+ * Generates bytecode of proxy classes, that pass every overridable method to {@link Dispatcher}
+ * held in public field. Proxy is generated in package of <b>host</b> class. Only bridge methods
+ * and {@link Object#finalize()} are not dispatched, the latter being overridden with empty method.
+ */
+class ProxyGenerator {
+  private static final String dispatcherField = "dispatcher";
+  private static final String fingerprintField = "fingerprint";
+  private static final String dispatcherName = Type.getInternalName(Dispatcher.class);
+  private static final String dispatcherDescriptor = Type.getDescriptor(Dispatcher.class);
+  private static final String callName = Type.getInternalName(Call.class);
+  private static final String callTypeDescriptor = Type.getDescriptor(Call.class);
+  private static final String callDescriptor = "(Ljava/lang/Object;I)" + callTypeDescriptor;
+  private static final int version = 2;
+
+  private ProxyGenerator() {}
+
+  /**
+   * Class in package of which proxy is generated.
+   */
+  public static Class<?> hostOf(Typing typing) {
+    return typing.superclass == Object.class
+        ? ProxyGenerator.class
+        : typing.superclass;
+  }
+
+  /**
+   * Internal name of proxy class in package of <b>host</b>, derived from name of superclass.
+   */
+  public static String nameOf(Typing typing, Class<?> host, String suffix) {
+    String packageName = packageNameOf(host);
+    String simpleName = typing.superclass.getName()
+        .substring(packageNameOf(typing.superclass).length()).replace(".", "");
+    return (packageName.length() == 0
+        ? ""
+        : packageName.replace('.', '/') + "/") + simpleName + suffix;
+  }
+
+  /**
+   * Fingerprint of overridden <b>methods</b>, stored in generated proxy class, changes whenever
+   * proxy class generated for same typing would differ.
+   */
+  public static String fingerprintOf(List<Method> methods) {
+    StringBuilder builder = new StringBuilder();
+    builder.append(version).append('\n');
+    for (Method method : methods) {
+      builder.append(method.getModifiers() & (ACC_PUBLIC | ACC_PROTECTED)).append(' ')
+          .append(signatureOf(method)).append('\n');
+    }
+    return Hashes.sha1(builder.toString());
+  }
+
+  public static String fingerprintField() {
+    return fingerprintField;
+  }
+
+  /**
+   * Methods overridden by proxy in order of their signatures, so indexes of methods do not depend
+   * on order of reflection.
+   */
+  public static List<Method> methodsOf(Typing typing, Class<?> host) {
+    Map<String, Method> methods = new TreeMap<String, Method>();
+    Set<String> inherited = new HashSet<String>();
+    Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>(typing.interfaces);
+    for (Class<?> type = typing.superclass; type != null; type = type.getSuperclass()) {
+      interfaces.addAll(Arrays.asList(type.getInterfaces()));
+      for (Method method : type.getDeclaredMethods()) {
+        int modifiers = method.getModifiers();
+        String signature = signatureOf(method);
+        if (Modifier.isStatic(modifiers) || Modifier.isPrivate(modifiers)
+            || methods.containsKey(signature) || inherited.contains(signature)) {
+          continue;
+        }
+        if (Modifier.isFinal(modifiers) || method.isBridge() || isPackagePrivate(modifiers)
+            && !isSamePackage(type, host)) {
+          inherited.add(signature);
+        } else {
+          methods.put(signature, method);
+        }
+      }
+    }
+    for (Class<?> interfacee : interfaces) {
+      for (Method method : interfacee.getMethods()) {
+        String signature = signatureOf(method);
+        if (!Modifier.isStatic(method.getModifiers()) && !methods.containsKey(signature)
+            && !inherited.contains(signature)) {
+          methods.put(signature, method);
+        }
+      }
+    }
+    return new ArrayList<Method>(methods.values());
+  }
+
+  /**
+   * Checks that all types referenced by proxy are accessible from package of <b>host</b> and
+   * resolve to same classes from its class loader.
+   */
+  public static boolean canGenerate(Typing typing, Class<?> host, List<Method> methods) {
+    if (Modifier.isFinal(typing.superclass.getModifiers())
+        || !isUsable(typing.superclass, host) || !isUsable(Dispatcher.class, host)) {
+      return false;
+    }
+    for (Class<?> interfacee : typing.interfaces) {
+      if (!isUsable(interfacee, host)) {
+        return false;
+      }
+    }
+    for (Method method : methods) {
+      if (!isUsable(method.getReturnType(), host)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static byte[] generate(String name, Typing typing, List<Method> methods) {
+    ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    writer.visit(V1_5, ACC_PUBLIC | ACC_SUPER | ACC_SYNTHETIC, name, null,
+        Type.getInternalName(typing.superclass), internalNamesOf(typing.interfaces));
+    writer.visitField(ACC_PUBLIC, dispatcherField, dispatcherDescriptor, null, null).visitEnd();
+    writer.visitField(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, fingerprintField, "Ljava/lang/String;",
+        null, fingerprintOf(methods)).visitEnd();
+    for (int i = 0; i < methods.size(); i++) {
+      generateMethod(writer, name, i, methods.get(i));
+    }
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+
+  public static String dispatcherField() {
+    return dispatcherField;
+  }
+
+  /**
+   * Class or interface through which <b>method</b> is invoked directly from package of
+   * <b>host</b>, or null if it must be invoked reflectively.
+   */
+  @Nullable
+  public static Class<?> ownerOf(Method method, Typing typing, Class<?> host) {
+    Class<?> owner = method.getDeclaringClass().isInterface()
+        ? method.getDeclaringClass()
+        : typing.superclass;
+    int modifiers = method.getModifiers();
+    if (!isUsable(owner, host) || isFinalize(method) || !Modifier.isPublic(modifiers)
+        && !isSamePackage(method.getDeclaringClass(), host)) {
+      return null;
+    }
+    for (Class<?> parameter : method.getParameterTypes()) {
+      if (!isUsable(parameter, host)) {
+        return null;
+      }
+    }
+    return owner;
+  }
+
+  /**
+   * Generates {@link Forwarder} invoking methods with index in <b>methods</b> and not null
+   * <b>owners</b>. Primitive results are returned as bits, like from {@link PrimitiveHandler}.
+   */
+  public static byte[] generateForwarder(String name, List<Method> methods, Class<?>[] owners) {
+    ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    writer.visit(V1_5, ACC_PUBLIC | ACC_SUPER | ACC_SYNTHETIC, name, null, "java/lang/Object",
+        new String[] { Type.getInternalName(Forwarder.class) });
+    MethodVisitor constructor = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    constructor.visitCode();
+    constructor.visitVarInsn(ALOAD, 0);
+    constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+    constructor.visitInsn(RETURN);
+    constructor.visitMaxs(0, 0);
+    constructor.visitEnd();
+    generateForward(writer, true, methods, owners);
+    generateForward(writer, false, methods, owners);
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+
+  private static void generateForward(ClassWriter writer, boolean primitive, List<Method> methods,
+      Class<?>[] owners) {
+    MethodVisitor visitor = writer.visitMethod(ACC_PUBLIC, primitive
+        ? "forwardPrimitive"
+        : "forwardObject", "(ILjava/lang/Object;" + callTypeDescriptor + ")" + (primitive
+        ? "J"
+        : "Ljava/lang/Object;"), null, new String[] { "java/lang/Throwable" });
+    visitor.visitCode();
+    Label unsupported = new Label();
+    Label[] labels = new Label[methods.size()];
+    for (int i = 0; i < labels.length; i++) {
+      labels[i] = owners[i] != null && methods.get(i).getReturnType().isPrimitive() == primitive
+          ? new Label()
+          : unsupported;
+    }
+    if (labels.length > 0) {
+      visitor.visitVarInsn(ILOAD, 1);
+      visitor.visitTableSwitchInsn(0, labels.length - 1, unsupported, labels);
+    }
+    for (int i = 0; i < labels.length; i++) {
+      if (labels[i] != unsupported) {
+        visitor.visitLabel(labels[i]);
+        generateForwardCase(visitor, methods.get(i), owners[i]);
+      }
+    }
+    visitor.visitLabel(unsupported);
+    visitor.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
+    visitor.visitInsn(DUP);
+    visitor.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "()V");
+    visitor.visitInsn(ATHROW);
+    visitor.visitMaxs(0, 0);
+    visitor.visitEnd();
+  }
+
+  private static void generateForwardCase(MethodVisitor visitor, Method method, Class<?> owner) {
+    String ownerName = Type.getInternalName(owner);
+    visitor.visitVarInsn(ALOAD, 2);
+    visitor.visitTypeInsn(CHECKCAST, ownerName);
+    Class<?>[] parameters = method.getParameterTypes();
+    for (int i = 0; i < parameters.length; i++) {
+      visitor.visitVarInsn(ALOAD, 3);
+      push(visitor, i);
+      if (parameters[i].isPrimitive()) {
+        visitor.visitMethodInsn(INVOKEVIRTUAL, callName, parameters[i].getName() + "At",
+            "(I)" + Type.getDescriptor(parameters[i]));
+      } else {
+        visitor.visitMethodInsn(INVOKEVIRTUAL, callName, "objectAt", "(I)Ljava/lang/Object;");
+        if (parameters[i] != Object.class) {
+          visitor.visitTypeInsn(CHECKCAST, Type.getInternalName(parameters[i]));
+        }
+      }
+    }
+    visitor.visitMethodInsn(owner.isInterface()
+        ? INVOKEINTERFACE
+        : INVOKEVIRTUAL, ownerName, method.getName(), Type.getMethodDescriptor(method));
+    Class<?> type = method.getReturnType();
+    if (type == void.class) {
+      visitor.visitInsn(LCONST_0);
+    } else if (type == float.class) {
+      visitor.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "floatToRawIntBits", "(F)I");
+      visitor.visitInsn(I2L);
+    } else if (type == double.class) {
+      visitor.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "doubleToRawLongBits", "(D)J");
+    } else if (type != long.class && type.isPrimitive()) {
+      visitor.visitInsn(I2L);
+    }
+    visitor.visitInsn(type.isPrimitive()
+        ? LRETURN
+        : ARETURN);
+  }
+
+  private static void generateMethod(ClassWriter writer, String name, int index, Method method) {
+    MethodVisitor visitor = writer.visitMethod(
+        method.getModifiers() & (ACC_PUBLIC | ACC_PROTECTED), method.getName(),
+        Type.getMethodDescriptor(method), null, null);
+    visitor.visitCode();
+    if (isFinalize(method)) {
+      visitor.visitInsn(RETURN);
+    } else {
+      visitor.visitVarInsn(ALOAD, 0);
+      visitor.visitFieldInsn(GETFIELD, name, dispatcherField, dispatcherDescriptor);
+      visitor.visitInsn(DUP);
+      visitor.visitVarInsn(ALOAD, 0);
+      push(visitor, index);
+      visitor.visitMethodInsn(INVOKEVIRTUAL, dispatcherName, "call", callDescriptor);
+      Class<?>[] parameters = method.getParameterTypes();
+      int slot = 1;
+      for (int i = 0; i < parameters.length; i++) {
+        Type type = Type.getType(parameters[i]);
+        Class<?> argument = argumentTypeOf(parameters[i]);
+        push(visitor, i);
+        visitor.visitVarInsn(type.getOpcode(ILOAD), slot);
+        visitor.visitMethodInsn(INVOKEVIRTUAL, callName, "set" + kindOf(argument),
+            "(I" + descriptorOf(argument) + ")" + callTypeDescriptor);
+        slot += type.getSize();
+      }
+      Class<?> returnType = method.getReturnType();
+      visitor.visitMethodInsn(INVOKEVIRTUAL, dispatcherName, "dispatch" + kindOf(returnType),
+          "(" + callTypeDescriptor + ")" + descriptorOf(returnType));
+      if (returnType == void.class) {
+        visitor.visitInsn(RETURN);
+      } else {
+        if (!returnType.isPrimitive() && returnType != Object.class) {
+          visitor.visitTypeInsn(CHECKCAST, Type.getInternalName(returnType));
+        }
+        visitor.visitInsn(Type.getType(returnType).getOpcode(IRETURN));
+      }
+    }
+    visitor.visitMaxs(0, 0);
+    visitor.visitEnd();
+  }
+
+  private static void push(MethodVisitor visitor, int value) {
+    if (value <= 5) {
+      visitor.visitInsn(ICONST_0 + value);
+    } else if (value <= Byte.MAX_VALUE) {
+      visitor.visitIntInsn(BIPUSH, value);
+    } else if (value <= Short.MAX_VALUE) {
+      visitor.visitIntInsn(SIPUSH, value);
+    } else {
+      visitor.visitLdcInsn(value);
+    }
+  }
+
+  /**
+   * Suffix of names of {@link Dispatcher} and {@link Call} methods specialized for <b>type</b>.
+   */
+  private static String kindOf(Class<?> type) {
+    return !type.isPrimitive()
+        ? "Object"
+        : type == boolean.class
+            ? "Boolean"
+            : type == char.class
+                ? "Char"
+                : Character.toUpperCase(type.getName().charAt(0)) + type.getName().substring(1);
+  }
+
+  /** primitives narrower than int are int in bytecode */
+  private static Class<?> argumentTypeOf(Class<?> type) {
+    return type == boolean.class || type == char.class || type == byte.class
+        || type == short.class
+        ? int.class
+        : type;
+  }
+
+  private static String descriptorOf(Class<?> type) {
+    return type.isPrimitive()
+        ? Type.getDescriptor(type)
+        : "Ljava/lang/Object;";
+  }
+
+  private static String[] internalNamesOf(Set<Class<?>> types) {
+    List<String> names = new ArrayList<String>();
+    for (Class<?> type : types) {
+      names.add(Type.getInternalName(type));
+    }
+    Collections.sort(names);
+    return names.toArray(new String[0]);
+  }
+
+  private static String signatureOf(Method method) {
+    return method.getName() + Type.getMethodDescriptor(method);
+  }
+
+  private static boolean isPackagePrivate(int modifiers) {
+    return (modifiers & (Modifier.PUBLIC | Modifier.PROTECTED | Modifier.PRIVATE)) == 0;
+  }
+
+  private static boolean isUsable(Class<?> type, Class<?> host) {
+    Class<?> element = elementOf(type);
+    return element.isPrimitive() || isAccessible(element, host) && isVisible(element, host);
+  }
+
+  /** protected nested classes are public at runtime */
+  private static boolean isAccessible(Class<?> type, Class<?> host) {
+    int modifiers = type.getModifiers();
+    return Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers)
+        || isSamePackage(type, host);
+  }
+
+  private static boolean isVisible(Class<?> type, Class<?> host) {
+    try {
+      return Class.forName(type.getName(), false, host.getClassLoader()) == type;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static boolean isSamePackage(Class<?> type, Class<?> other) {
+    return type.getClassLoader() == other.getClassLoader()
+        && packageNameOf(type).equals(packageNameOf(other));
+  }
+
+  private static String packageNameOf(Class<?> type) {
+    String name = elementOf(type).getName();
+    int index = name.lastIndexOf('.');
+    return index == -1
+        ? ""
+        : name.substring(0, index);
+  }
+
+  private static Class<?> elementOf(Class<?> type) {
+    return type.isArray()
+        ? elementOf(type.getComponentType())
+        : type;
+  }
+}
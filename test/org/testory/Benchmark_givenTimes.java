@@ -0,0 +1,77 @@
+package org.testory;
+
+import static org.testory.Testory.givenTimes;
+import static org.testory.Testory.givenTimesIndexed;
+import static org.testory.mock.Invocation.invocation;
+
+import java.util.Arrays;
+
+import org.testory.common.IndexedClosure;
+import org.testory.mock.Invocation;
+import org.testory.mock.Invocations;
+
+/**
+ * Compares givenTimes forwarding to target with reflective invocation in loop, which givenTimes
+ * used before.
+ */
+public class Benchmark_givenTimes {
+  private static final int times = 10000000;
+
+  public static void main(String[] args) throws Throwable {
+    for (int round = 0; round < 3; round++) {
+      System.out.println("round " + round);
+      report("reflection", reflection());
+      report("givenTimes", givenTimesObject());
+      report("givenTimesIndexed", givenTimesIndexedClosure());
+    }
+  }
+
+  private static long reflection() throws Throwable {
+    Counter counter = new Counter();
+    Invocation invocation = invocation(Counter.class.getMethod("increment", int.class), counter,
+        Arrays.asList(1));
+    long start = System.nanoTime();
+    for (int i = 0; i < times; i++) {
+      Invocations.invoke(invocation);
+    }
+    return check(counter, System.nanoTime() - start);
+  }
+
+  private static long givenTimesObject() {
+    Counter counter = new Counter();
+    long start = System.nanoTime();
+    givenTimes(times, counter).increment(1);
+    return check(counter, System.nanoTime() - start);
+  }
+
+  private static long givenTimesIndexedClosure() {
+    final Counter counter = new Counter();
+    long start = System.nanoTime();
+    givenTimesIndexed(times, new IndexedClosure() {
+      public Object invoke(int index) {
+        counter.increment(index & 1);
+        return null;
+      }
+    });
+    return check(counter, System.nanoTime() - start);
+  }
+
+  private static long check(Counter counter, long nanos) {
+    if (counter.count == 0) {
+      throw new AssertionError();
+    }
+    return nanos;
+  }
+
+  private static void report(String name, long nanos) {
+    System.out.println(String.format("  %-20s %10.1f ns/op", name, (double) nanos / times));
+  }
+
+  public static class Counter {
+    public long count;
+
+    public long increment(int by) {
+      return count += by;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package org.testory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.testory.Testory.givenTest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Describe_InjectorProcessor {
+  private File directory;
+  private JavaCompiler compiler;
+  private Object test;
+
+  @Before
+  public void before() throws IOException {
+    compiler = ToolProvider.getSystemJavaCompiler();
+    assumeTrue(compiler != null);
+    directory = File.createTempFile("testory", "injector");
+    directory.delete();
+    new File(directory, "pkg").mkdirs();
+  }
+
+  @After
+  public void after() {
+    if (directory != null) {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void should_generate_injector_of_annotated_class() throws Exception {
+    write("pkg/Base.java", "package pkg; public class Base { Object baseField; }");
+    write("pkg/Test.java", "package pkg;" //
+        + "@org.testory.InjectDummies public class Test extends Base implements Runnable {"
+        + "  Object field; String string; int primitive; Object[] array; Runnable notNull = this;"
+        + "  java.util.List<String> list;"
+        + "  public void run() {} }");
+    assertTrue(compile("pkg/Base.java", "pkg/Test.java"));
+    ClassLoader loader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, getClass()
+        .getClassLoader());
+    Class<?> type = loader.loadClass("pkg.Test");
+    assertNotNull(Injector.injectorOf(type));
+    test = type.newInstance();
+    givenTest(test);
+    assertEquals("field", valueOf("field").toString());
+    assertEquals("baseField", valueOf("baseField").toString());
+    assertEquals("string", valueOf("string"));
+    assertEquals("array", ((Object[]) valueOf("array"))[0].toString());
+    assertSame(test, valueOf("notNull"));
+    assertEquals("list", valueOf("list").toString());
+  }
+
+  @Test
+  public void should_skip_inaccessible_inherited_fields() throws Exception {
+    write("pkg/Base.java", "package pkg; public class Base { private Object privateField; }");
+    write("pkg/Test.java", "package pkg;" //
+        + "@org.testory.InjectDummies public class Test extends Base { Object field; }");
+    assertTrue(compile("pkg/Base.java", "pkg/Test.java"));
+    ClassLoader loader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, getClass()
+        .getClassLoader());
+    Class<?> type = loader.loadClass("pkg.Test");
+    assertNotNull(Injector.injectorOf(type));
+    test = type.newInstance();
+    givenTest(test);
+    assertEquals("field", valueOf("field").toString());
+    assertNull(valueOf("privateField"));
+  }
+
+  @Test
+  public void should_generate_injector_of_junit3_test_case() throws Exception {
+    write("pkg/Test.java", "package pkg;" //
+        + "@org.testory.InjectDummies public class Test extends junit.framework.TestCase {"
+        + "  Object field; }");
+    assertTrue(compile("pkg/Test.java"));
+  }
+
+  @Test
+  public void should_not_generate_injector_of_not_annotated_class() throws Exception {
+    write("pkg/Test.java", "package pkg; public class Test { Object field; }");
+    assertTrue(compile("pkg/Test.java"));
+    ClassLoader loader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, getClass()
+        .getClassLoader());
+    assertNull(Injector.injectorOf(loader.loadClass("pkg.Test")));
+  }
+
+  @Test
+  public void should_fail_for_private_field() throws IOException {
+    write("pkg/Test.java", "package pkg;" //
+        + "@org.testory.InjectDummies public class Test { private Object field; }");
+    assertFalse(compile("pkg/Test.java"));
+  }
+
+  @Test
+  public void should_fail_for_private_class() throws IOException {
+    write("pkg/Test.java", "package pkg;" //
+        + "public class Test { @org.testory.InjectDummies private static class Nested {} }");
+    assertFalse(compile("pkg/Test.java"));
+  }
+
+  private boolean compile(String... files) {
+    String[] arguments = new String[files.length + 6];
+    arguments[0] = "-classpath";
+    arguments[1] = System.getProperty("java.class.path");
+    arguments[2] = "-processor";
+    arguments[3] = InjectorProcessor.class.getName();
+    arguments[4] = "-d";
+    arguments[5] = directory.getPath();
+    for (int i = 0; i < files.length; i++) {
+      arguments[6 + i] = new File(directory, files[i]).getPath();
+    }
+    OutputStream silent = new OutputStream() {
+      public void write(int b) {}
+    };
+    return compiler.run(null, silent, silent, arguments) == 0;
+  }
+
+  private void write(String file, String source) throws IOException {
+    OutputStream output = new FileOutputStream(new File(directory, file));
+    try {
+      output.write(source.getBytes("UTF-8"));
+    } finally {
+      output.close();
+    }
+  }
+
+  private Object valueOf(String name) throws Exception {
+    for (Class<?> type = test.getClass(); type != null; type = type.getSuperclass()) {
+      for (Field field : type.getDeclaredFields()) {
+        if (field.getName().equals(name)) {
+          field.setAccessible(true);
+          return field.get(test);
+        }
+      }
+    }
+    throw new NoSuchFieldException(name);
+  }
+
+  private static void delete(File file) {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File child : files) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,184 @@
+package org.testory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static org.testory.Testory.thenReturned;
+import static org.testory.Testory.thenReturnedBy;
+import static org.testory.Testory.when;
+import static org.testory.Testory.whenConcurrently;
+import static org.testory.TestoryContext.currentContext;
+import static org.testory.TestoryContext.newContext;
+import static org.testory.test.TestUtils.newObject;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.testory.common.Closure;
+
+public class Describe_TestoryContext {
+  private Object object, otherObject;
+  private TestoryContext context, otherContext;
+  private ExecutorService executor;
+  private Throwable failure;
+
+  @Before
+  public void before() {
+    object = newObject("object");
+    otherObject = newObject("otherObject");
+    context = newContext();
+    otherContext = newContext();
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void after() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void should_share_effect_of_when_across_threads() throws Exception {
+    context.run(new Runnable() {
+      public void run() {
+        when(object);
+      }
+    });
+    executor.submit(context.bind(new Runnable() {
+      public void run() {
+        thenReturned(object);
+      }
+    })).get();
+  }
+
+  @Test
+  public void should_isolate_contexts() {
+    context.run(new Runnable() {
+      public void run() {
+        when(object);
+      }
+    });
+    otherContext.run(new Runnable() {
+      public void run() {
+        when(otherObject);
+      }
+    });
+    context.run(new Runnable() {
+      public void run() {
+        thenReturned(object);
+      }
+    });
+    otherContext.run(new Runnable() {
+      public void run() {
+        thenReturned(otherObject);
+      }
+    });
+  }
+
+  @Test
+  public void should_restore_previous_context() {
+    TestoryContext previous = currentContext();
+    context.run(new Runnable() {
+      public void run() {
+        assertSame(context, currentContext());
+      }
+    });
+    assertSame(previous, currentContext());
+  }
+
+  @Test
+  public void should_not_share_default_context_with_started_threads() throws InterruptedException {
+    when(object);
+    final TestoryContext parentContext = currentContext();
+    Thread thread = new Thread() {
+      public void run() {
+        try {
+          assertNotSame(parentContext, currentContext());
+          when(otherObject);
+          thenReturned(otherObject);
+        } catch (Throwable throwable) {
+          failure = throwable;
+        }
+      }
+    };
+    thread.start();
+    thread.join();
+    assertEquals(null, failure);
+    thenReturned(object);
+  }
+
+  @Test
+  public void should_inherit_bound_context_by_started_threads_without_scoped_values()
+      throws InterruptedException {
+    assumeTrue(!hasScopedValues());
+    final Thread[] thread = new Thread[1];
+    context.run(new Runnable() {
+      public void run() {
+        when(object);
+        thread[0] = new Thread() {
+          public void run() {
+            try {
+              thenReturned(object);
+            } catch (Throwable throwable) {
+              failure = throwable;
+            }
+          }
+        };
+        thread[0].start();
+      }
+    });
+    thread[0].join();
+    assertEquals(null, failure);
+  }
+
+  @Test
+  public void should_not_share_context_of_test_with_threads_running_effects() {
+    TestoryContext testContext = currentContext();
+    whenConcurrently(2, new Closure() {
+      public Object invoke() {
+        return currentContext();
+      }
+    });
+    thenReturnedBy(0, testContext);
+  }
+
+  @Test
+  public void should_call_callable_in_context() throws Exception {
+    Object result = context.call(new Callable<Object>() {
+      public Object call() {
+        return currentContext();
+      }
+    });
+    assertSame(context, result);
+    assertNotSame(context, currentContext());
+  }
+
+  @Test
+  public void should_propagate_exception_of_callable() {
+    final Exception exception = new Exception();
+    try {
+      context.call(new Callable<Object>() {
+        public Object call() throws Exception {
+          throw exception;
+        }
+      });
+      fail();
+    } catch (Exception e) {
+      assertSame(exception, e);
+    }
+  }
+
+  private static boolean hasScopedValues() {
+    try {
+      Class.forName("java.lang.ScopedValue").getMethod("newInstance").invoke(null);
+      return true;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+}
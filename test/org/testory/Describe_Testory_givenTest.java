@@ -7,12 +7,14 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.testory.Testory.givenTest;
+import static org.testory.Testory.givenTestWarmUp;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
 import org.junit.Test;
 import org.testory.Dummies.DummyClass;
+import org.testory.mock.Mocks;
 
 public class Describe_Testory_givenTest {
   @Test
@@ -303,5 +305,102 @@ public class Describe_Testory_givenTest {
     assertEquals(DummyClass.class.getDeclaredField("dummyField"), test.field);
   }
 
+  @Test
+  public void should_inject_inherited_fields() {
+    class ConcreteClass {}
+    class SuperTestClass {
+      ConcreteClass superField;
+      String superString;
+    }
+    class TestClass extends SuperTestClass {
+      ConcreteClass field;
+    }
+    TestClass test = new TestClass();
+    givenTest(test);
+    assertTrue(test.superField instanceof ConcreteClass);
+    assertEquals("superString", test.superString);
+    assertTrue(test.field instanceof ConcreteClass);
+  }
+
+  @Test
+  public void should_skip_not_null_inherited_fields() {
+    class SuperTestClass {
+      Object superField;
+    }
+    class TestClass extends SuperTestClass {}
+    TestClass test = new TestClass();
+    Object object = new Object();
+    test.superField = object;
+    givenTest(test);
+    assertSame(object, test.superField);
+  }
+
+  @Test
+  public void should_inject_new_dummies_into_each_test() {
+    class TestClass {
+      Object field;
+      Object[] arrayField;
+    }
+    TestClass test = new TestClass();
+    TestClass otherTest = new TestClass();
+    givenTest(test);
+    givenTest(otherTest);
+    assertTrue(test.field != otherTest.field);
+    assertTrue(test.arrayField != otherTest.arrayField);
+    assertEquals("field", otherTest.field.toString());
+  }
+
+  @Test
+  public void should_inject_dummies_after_warm_up() {
+    class ConcreteClass {}
+    abstract class AbstractClass {}
+    class TestClass {
+      ConcreteClass concrete;
+      AbstractClass abstractt;
+      Interface interfacee;
+    }
+    givenTestWarmUp(TestClass.class);
+    TestClass test = new TestClass();
+    givenTest(test);
+    assertTrue(test.concrete instanceof ConcreteClass);
+    assertTrue(test.abstractt instanceof AbstractClass);
+    assertTrue(test.interfacee instanceof Interface);
+  }
+
+  @Test
+  public void should_not_generate_proxy_classes_again_after_warm_up() {
+    class ConcreteClass {}
+    abstract class AbstractClass {}
+    class TestClass {
+      ConcreteClass concrete;
+      AbstractClass abstractt;
+    }
+    givenTestWarmUp(TestClass.class);
+    long misses = Mocks.proxyClassMisses();
+    givenTest(new TestClass());
+    assertEquals(misses, Mocks.proxyClassMisses());
+  }
+
+  @Test
+  public void should_warm_up_inherited_fields() {
+    class ConcreteClass {}
+    class SuperTestClass {
+      ConcreteClass superField;
+    }
+    class TestClass extends SuperTestClass {}
+    givenTestWarmUp(TestClass.class);
+    long misses = Mocks.proxyClassMisses();
+    givenTest(new TestClass());
+    assertEquals(misses, Mocks.proxyClassMisses());
+  }
+
+  @Test
+  public void should_fail_warm_up_for_null_class() {
+    try {
+      givenTestWarmUp(null);
+      fail();
+    } catch (TestoryException e) {}
+  }
+
   public static interface Interface {}
 }
@@ -5,12 +5,17 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.testory.Testory.givenTimes;
+import static org.testory.Testory.givenTimesIndexed;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.testory.common.Closure;
+import org.testory.common.IndexedClosure;
 
 public class Describe_Testory_givenTimes {
   private int times, counter, failTime;
@@ -146,4 +151,79 @@ public class Describe_Testory_givenTimes {
       fail();
     } catch (TestoryException e) {}
   }
+
+  @Test
+  public void should_call_indexed_closure_with_indexes() {
+    final List<Integer> indexes = new ArrayList<Integer>();
+    givenTimesIndexed(times, new IndexedClosure() {
+      public Void invoke(int index) {
+        indexes.add(index);
+        return null;
+      }
+    });
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4), indexes);
+  }
+
+  @Test
+  public void should_fail_gently_if_indexed_closure_throws() {
+    failTime = 3;
+    try {
+      givenTimesIndexed(times, new IndexedClosure() {
+        public Void invoke(int index) throws Throwable {
+          counter++;
+          if (index == failTime) {
+            throw exception;
+          }
+          return null;
+        }
+      });
+      fail();
+    } catch (Throwable throwable) {
+      assertTrue(throwable instanceof RuntimeException);
+      assertSame(exception, throwable.getCause());
+      assertEquals(failTime + 1, counter);
+    }
+  }
+
+  @Test
+  public void should_fail_calling_indexed_closure_negative_number_of_times() {
+    try {
+      givenTimesIndexed(-1, new IndexedClosure() {
+        public Void invoke(int index) {
+          return null;
+        }
+      });
+      fail();
+    } catch (TestoryException e) {}
+  }
+
+  @Test
+  public void should_fail_for_null_indexed_closure() {
+    try {
+      givenTimesIndexed(times, null);
+      fail();
+    } catch (TestoryException e) {}
+  }
+
+  @Test
+  public void should_call_method_with_arguments_many_times() {
+    List<Object> list = new ArrayList<Object>();
+    givenTimes(times, list).add("element");
+    assertEquals(times, list.size());
+  }
+
+  @Test
+  public void should_call_method_returning_primitive_many_times() {
+    Counter counter = new Counter();
+    givenTimes(times, counter).increment(2);
+    assertEquals(2 * times, counter.count);
+  }
+
+  public static class Counter {
+    long count;
+
+    public long increment(int by) {
+      return count += by;
+    }
+  }
 }
@@ -0,0 +1,105 @@
+package org.testory;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.testory.Testory.thenAllocatedAtMost;
+import static org.testory.Testory.thenAllocatedAtMostPerCall;
+import static org.testory.Testory.when;
+import static org.testory.Testory.whenBenchmarked;
+import static org.testory.test.TestUtils.newObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.testory.common.Closure;
+
+public class Describe_Testory_thenAllocatedAtMost {
+  private Object object;
+
+  @Before
+  public void before() {
+    object = newObject("object");
+  }
+
+  @Test
+  public void should_succeed_if_closure_does_not_allocate() {
+    when(new Closure() {
+      public Object invoke() {
+        return object;
+      }
+    });
+    thenAllocatedAtMost(0);
+  }
+
+  @Test
+  public void should_fail_if_closure_allocates_too_much() {
+    when(new Closure() {
+      public Object invoke() {
+        return new byte[1000];
+      }
+    });
+    try {
+      thenAllocatedAtMost(100);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected allocated at most\n" //
+          + "    100 bytes\n" //
+          + "  but allocated\n"));
+    }
+    thenAllocatedAtMost(2000);
+  }
+
+  @Test
+  public void should_measure_chained_call() {
+    Foo foo = new Foo();
+    when(foo).allocate(1000);
+    try {
+      thenAllocatedAtMost(100);
+      fail();
+    } catch (TestoryAssertionError e) {}
+    thenAllocatedAtMost(2000);
+  }
+
+  @Test
+  public void should_succeed_if_benchmarked_call_does_not_allocate() {
+    Foo foo = new Foo();
+    whenBenchmarked(foo, 100, 1000).add(1, 2);
+    thenAllocatedAtMostPerCall(0);
+  }
+
+  @Test
+  public void should_fail_if_benchmarked_call_allocates_too_much() {
+    Foo foo = new Foo();
+    whenBenchmarked(foo, 10, 10).allocate(1000);
+    try {
+      thenAllocatedAtMostPerCall(100);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected allocated at most per call\n" //
+          + "    100 bytes\n" //
+          + "  but allocated per call\n"));
+    }
+    thenAllocatedAtMostPerCall(2000);
+    thenAllocatedAtMost(20000);
+  }
+
+  public static class Foo {
+    public int add(int a, int b) {
+      return a + b;
+    }
+
+    public Object allocate(int size) {
+      return new byte[size];
+    }
+  }
+
+  @Test
+  public void should_fail_if_when_did_not_invoke_anything() {
+    when(object);
+    try {
+      thenAllocatedAtMost(0);
+      fail();
+    } catch (TestoryException e) {}
+  }
+}
@@ -0,0 +1,192 @@
+package org.testory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.testory.Testory.thenCollectable;
+import static org.testory.Testory.thenNotRetained;
+import static org.testory.Testory.when;
+import static org.testory.TestoryContext.currentWhenEffect;
+import static org.testory.test.TestUtils.newObject;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.testory.common.Closure;
+
+public class Describe_Testory_thenCollectable {
+  private static Object leaked;
+  private Registry registry;
+  private Object listener;
+
+  @Before
+  public void before() {
+    registry = new Registry();
+    listener = newObject("listener");
+  }
+
+  @After
+  public void after() {
+    leaked = null;
+  }
+
+  @Test
+  public void should_succeed_if_object_is_collected() {
+    thenCollectable(new WeakReference<Object>(newObject("object")));
+  }
+
+  @Test
+  public void should_succeed_if_object_is_collected_after_when() {
+    WeakReference<Object> reference = register(newObject("object"));
+    when(registry).clear();
+    thenCollectable(reference, registry);
+  }
+
+  @Test
+  public void should_fail_with_path_retaining_object() {
+    WeakReference<Object> reference = register(newObject("object"));
+    try {
+      thenCollectable(reference, new Object(), registry);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertEquals("\n" //
+          + "  expected collectable\n" //
+          + "    object\n" //
+          + "  but retained by\n" //
+          + "    roots[1].listeners[0]\n" //
+      , e.getMessage());
+    }
+  }
+
+  @Test
+  public void should_fail_without_path_if_retained_from_elsewhere() {
+    leaked = newObject("object");
+    try {
+      thenCollectable(new WeakReference<Object>(leaked));
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertEquals("\n" //
+          + "  expected collectable\n" //
+          + "    object\n" //
+          + "  but was not collected\n" //
+          + "    \n" //
+      , e.getMessage());
+    }
+  }
+
+  private WeakReference<Object> register(Object object) {
+    registry.add(object);
+    return new WeakReference<Object>(object);
+  }
+
+  @Test
+  public void should_succeed_if_not_retained() {
+    thenNotRetained(listener, registry);
+  }
+
+  @Test
+  public void should_fail_if_retained_by_field() {
+    registry.add(listener);
+    try {
+      thenNotRetained(listener, registry);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertEquals("\n" //
+          + "  expected not retained\n" //
+          + "    listener\n" //
+          + "  but retained by\n" //
+          + "    roots[0].listeners[0]\n" //
+      , e.getMessage());
+    }
+  }
+
+  @Test
+  public void should_fail_if_retained_by_map() {
+    registry.put("key", listener);
+    try {
+      thenNotRetained(listener, registry);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertEquals("\n" //
+          + "  expected not retained\n" //
+          + "    listener\n" //
+          + "  but retained by\n" //
+          + "    roots[0].byName.get(key)\n" //
+      , e.getMessage());
+    }
+  }
+
+  @Test
+  public void should_describe_only_keys_on_path() {
+    final List<Object> described = new ArrayList<Object>();
+    Object key = new Object() {
+      public String toString() {
+        described.add(this);
+        return "key";
+      }
+    };
+    Map<Object, Object> map = new HashMap<Object, Object>();
+    map.put(key, newObject("value"));
+    registry.add(listener);
+    try {
+      thenNotRetained(listener, map, registry);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertEquals("\n" //
+          + "  expected not retained\n" //
+          + "    listener\n" //
+          + "  but retained by\n" //
+          + "    roots[1].listeners[0]\n" //
+      , e.getMessage());
+    }
+    assertEquals(0, described.size());
+  }
+
+  @Test
+  public void should_find_path_from_effect_of_when() {
+    final Object returned = newObject("returned");
+    when(new Closure() {
+      public Object invoke() {
+        return returned;
+      }
+    });
+    try {
+      thenNotRetained(returned, currentWhenEffect());
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertEquals("\n" //
+          + "  expected not retained\n" //
+          + "    returned\n" //
+          + "  but retained by\n" //
+          + "    roots[0].result\n" //
+      , e.getMessage());
+    }
+  }
+
+  @Test
+  public void should_not_follow_weak_references() {
+    thenNotRetained(listener, new WeakReference<Object>(listener));
+  }
+
+  public static class Registry {
+    private final List<Object> listeners = new ArrayList<Object>();
+    private final Map<String, Object> byName = new HashMap<String, Object>();
+
+    public void add(Object object) {
+      listeners.add(object);
+    }
+
+    public void put(String name, Object object) {
+      byName.put(name, object);
+    }
+
+    public void clear() {
+      listeners.clear();
+    }
+  }
+}
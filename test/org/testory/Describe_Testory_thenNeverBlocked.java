@@ -0,0 +1,147 @@
+package org.testory;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.testory.Testory.thenBlockedAtMost;
+import static org.testory.Testory.thenNeverBlocked;
+import static org.testory.Testory.when;
+import static org.testory.Testory.whenMonitored;
+import static org.testory.test.TestUtils.newObject;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.testory.common.Closure;
+
+public class Describe_Testory_thenNeverBlocked {
+  private Object object;
+  private Object lock;
+
+  @Before
+  public void before() {
+    object = newObject("object");
+    lock = new Object();
+  }
+
+  @Test
+  public void should_succeed_if_closure_does_not_block() {
+    whenMonitored(new Closure() {
+      public Object invoke() {
+        return object;
+      }
+    });
+    thenNeverBlocked();
+    thenBlockedAtMost(0, 0, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void should_fail_if_closure_sleeps() {
+    whenMonitored(new Closure() {
+      public Object invoke() throws InterruptedException {
+        Thread.sleep(10);
+        return object;
+      }
+    });
+    try {
+      thenNeverBlocked();
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected never blocked\n" //
+          + "    \n" //
+          + "  but was\n" //
+          + "    blocked 0 times"));
+      assertTrue(e.getMessage(), e.getMessage().contains("waited 1 times"));
+    }
+  }
+
+  @Test
+  public void should_fail_if_closure_is_blocked_on_monitor() throws InterruptedException {
+    final CountDownLatch locked = new CountDownLatch(1);
+    Thread thread = new Thread() {
+      public void run() {
+        synchronized (lock) {
+          locked.countDown();
+          try {
+            Thread.sleep(50);
+          } catch (InterruptedException e) {}
+        }
+      }
+    };
+    thread.start();
+    locked.await();
+    whenMonitored(new Closure() {
+      public Object invoke() {
+        synchronized (lock) {
+          return object;
+        }
+      }
+    });
+    thread.join();
+    try {
+      thenBlockedAtMost(0, 1, TimeUnit.MINUTES);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected blocked at most\n" //
+          + "    0 times for 1 minutes\n" //
+          + "  but was\n" //
+          + "    blocked 1 times"));
+    }
+    thenBlockedAtMost(1, 1, TimeUnit.MINUTES);
+  }
+
+  @Test
+  public void should_measure_chained_call() {
+    Foo foo = new Foo();
+    whenMonitored(foo).sleep(10);
+    try {
+      thenNeverBlocked();
+      fail();
+    } catch (TestoryAssertionError e) {}
+    thenBlockedAtMost(1, 1, TimeUnit.MINUTES);
+  }
+
+  public static class Foo {
+    public void sleep(long millis) {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  @Test
+  public void should_fail_if_when_did_not_invoke_anything() {
+    whenMonitored(object);
+    try {
+      thenNeverBlocked();
+      fail();
+    } catch (TestoryException e) {}
+  }
+
+  @Test
+  public void should_fail_if_when_did_not_monitor_blocking() {
+    when(new Closure() {
+      public Object invoke() {
+        return object;
+      }
+    });
+    try {
+      thenNeverBlocked();
+      fail();
+    } catch (TestoryException e) {}
+  }
+
+  @Test
+  public void should_fail_if_chained_when_did_not_monitor_blocking() {
+    when(new Foo()).sleep(0);
+    try {
+      thenBlockedAtMost(1, 1, TimeUnit.MINUTES);
+      fail();
+    } catch (TestoryException e) {}
+  }
+}
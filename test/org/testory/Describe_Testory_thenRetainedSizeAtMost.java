@@ -0,0 +1,106 @@
+package org.testory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.testory.Testory.thenRetainedSizeAtMost;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class Describe_Testory_thenRetainedSizeAtMost {
+  @Test
+  public void should_count_array_elements() {
+    long empty = Footprint.sizeOf(new Object[0]);
+    long full = Footprint.sizeOf(new Object[] { new Object(), new Object() });
+    assertEquals(empty + 8 + 2 * Footprint.sizeOf(new Object()), full, 8);
+  }
+
+  @Test
+  public void should_count_primitive_arrays_by_length() {
+    assertTrue(Footprint.sizeOf(new long[1000]) >= 8000);
+    assertTrue(Footprint.sizeOf(new byte[1000]) < 2000);
+  }
+
+  @Test
+  public void should_count_shared_object_once() {
+    Object shared = new long[1000];
+    assertTrue(Footprint.sizeOf(new Object[] { shared, shared }) < 2 * Footprint.sizeOf(shared));
+  }
+
+  @Test
+  public void should_count_inherited_fields() {
+    Child child = new Child();
+    assertTrue(Footprint.sizeOf(child) >= Footprint.sizeOf(child.parentArray));
+  }
+
+  @Test
+  public void should_count_fields_of_jdk_classes() {
+    List<Object> list = new ArrayList<Object>();
+    list.add(new long[1000]);
+    assertTrue(Footprint.sizeOf(list) >= 8000);
+  }
+
+  @Test
+  public void should_handle_cycles() {
+    Node node = new Node();
+    node.next = node;
+    assertEquals(Footprint.sizeOf(new Node()), Footprint.sizeOf(node));
+  }
+
+  @Test
+  public void should_handle_deep_graphs() {
+    Node node = null;
+    for (int i = 0; i < 1000000; i++) {
+      Node previous = node;
+      node = new Node();
+      node.next = previous;
+    }
+    assertEquals(1000000 * Footprint.sizeOf(new Node()), Footprint.sizeOf(node));
+  }
+
+  @Test
+  public void should_not_count_classes() {
+    Holder holder = new Holder();
+    holder.value = Object.class;
+    Holder empty = new Holder();
+    assertEquals(Footprint.sizeOf(empty), Footprint.sizeOf(holder));
+  }
+
+  @Test
+  public void should_succeed_if_size_is_within_budget() {
+    thenRetainedSizeAtMost(new long[1000], 10000);
+  }
+
+  @Test
+  public void should_fail_if_size_exceeds_budget() {
+    try {
+      thenRetainedSizeAtMost(new long[1000], 1000);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected retained size at most\n" //
+          + "    1000 bytes\n" //
+          + "  but was estimated\n" //
+          + "    80"));
+    }
+  }
+
+  private static class Node {
+    @SuppressWarnings("unused")
+    Node next;
+  }
+
+  private static class Holder {
+    @SuppressWarnings("unused")
+    Object value;
+  }
+
+  private static class Parent {
+    final long[] parentArray = new long[100];
+  }
+
+  private static class Child extends Parent {}
+}
@@ -3,14 +3,22 @@ package org.testory;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.testory.Testory.thenCollectable;
 import static org.testory.Testory.thenReturned;
 import static org.testory.Testory.when;
-import static org.testory.WhenEffect.whenEffect;
+import static org.testory.TestoryContext.currentWhenEffect;
+import static org.testory.TestoryContext.setCurrentWhenEffect;
 import static org.testory.test.TestUtils.newObject;
 import static org.testory.test.TestUtils.newThrowable;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.testory.common.Closure;
@@ -63,13 +71,92 @@ public class Describe_Testory_when {
   @Test
   public void should_register_instance() throws Throwable {
     when(object);
-    assertEquals(object, whenEffect.get().invoke());
+    assertEquals(object, currentWhenEffect().invoke());
   }
 
   @Test
   public void should_register_null_instance() throws Throwable {
     when((Object) null);
-    assertEquals(null, whenEffect.get().invoke());
+    assertEquals(null, currentWhenEffect().invoke());
+  }
+
+  @Test
+  public void should_reuse_proxy_for_instances_of_same_class() {
+    class Foo {}
+    assertSame(when(new Foo()), when(new Foo()));
+  }
+
+  @Test
+  public void should_retarget_reused_proxy() throws Throwable {
+    List<Object> list = new ArrayList<Object>(Arrays.asList(object));
+    List<Object> otherList = new ArrayList<Object>();
+    when(otherList).size();
+    when(list).size();
+    assertEquals(1, currentWhenEffect().invoke());
+    when(list).get(0);
+    assertSame(object, currentWhenEffect().invoke());
+  }
+
+  @Test
+  public void should_forget_result_of_previous_invocation() throws Throwable {
+    List<Object> list = new ArrayList<Object>(Arrays.asList(object));
+    when(list).get(0);
+    when(list).get(1);
+    try {
+      currentWhenEffect().invoke();
+      fail();
+    } catch (IndexOutOfBoundsException e) {}
+    when(list).get(0);
+    assertSame(object, currentWhenEffect().invoke());
+  }
+
+  @Test
+  public void should_forward_repeated_invocations_of_proxy() throws Throwable {
+    List<Object> list = new ArrayList<Object>(Arrays.asList(object));
+    List<Object> when = when(list);
+    when.size();
+    when.get(0);
+    thenReturned(object);
+  }
+
+  @Test
+  public void should_not_retain_target_after_next_when() {
+    List<Object> list = new ArrayList<Object>();
+    WeakReference<Object> reference = new WeakReference<Object>(list);
+    when(list).size();
+    list = null;
+    when(object);
+    thenCollectable(reference);
+  }
+
+  @Test
+  public void should_fail_if_proxy_is_called_after_when_of_other_class() {
+    List<Object> when = when(new ArrayList<Object>());
+    when(object);
+    try {
+      when.size();
+      fail();
+    } catch (TestoryException e) {}
+  }
+
+  @Test
+  public void should_forward_kept_proxy_to_object_of_latest_when_of_same_class() throws Throwable {
+    List<Object> when = when(new ArrayList<Object>());
+    when(new ArrayList<Object>(Arrays.asList(object)));
+    when.size();
+    thenReturned(1);
+  }
+
+  @Test
+  public void should_not_retarget_proxy_while_it_forwards() throws Throwable {
+    class Foo {
+      Object nested() {
+        when(new Foo()).toString();
+        return "outer";
+      }
+    }
+    when(new Foo()).nested();
+    assertEquals("outer", currentWhenEffect().invoke());
   }
 
   @Test
@@ -92,7 +179,7 @@ public class Describe_Testory_when {
 
   @Test
   public void should_fail_if_missed_when() {
-    whenEffect.set(null);
+    setCurrentWhenEffect(null);
     try {
       thenReturned(object);
       fail();
@@ -0,0 +1,156 @@
+package org.testory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.testory.Testory.thenMeanWithin;
+import static org.testory.Testory.thenPercentileWithin;
+import static org.testory.Testory.thenReturned;
+import static org.testory.Testory.thenThroughputAtLeast;
+import static org.testory.Testory.thenThrown;
+import static org.testory.Testory.when;
+import static org.testory.Testory.whenBenchmarked;
+import static org.testory.test.TestUtils.newObject;
+import static org.testory.test.TestUtils.newThrowable;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.testory.common.Closure;
+
+public class Describe_Testory_whenBenchmarked {
+  private Object object;
+  private Throwable throwable;
+  private int invoked;
+
+  @Before
+  public void before() {
+    object = newObject("object");
+    throwable = newThrowable("throwable");
+  }
+
+  @Test
+  public void should_invoke_closure_warm_ups_and_iterations_times() {
+    whenBenchmarked(new Closure() {
+      public Object invoke() {
+        return ++invoked;
+      }
+    }, 3, 5);
+    assertEquals(8, invoked);
+    thenReturned(8);
+  }
+
+  @Test
+  public void should_record_thrown_throwable() {
+    whenBenchmarked(new Closure() {
+      public Object invoke() throws Throwable {
+        throw throwable;
+      }
+    }, 1, 1);
+    thenThrown(throwable);
+  }
+
+  @Test
+  public void should_forward_chained_call() {
+    Counter counter = new Counter();
+    whenBenchmarked(counter, 3, 5).increment(2);
+    assertEquals(16, counter.count);
+    thenReturned(16);
+  }
+
+  @Test
+  public void should_forward_chained_call_returning_object() {
+    Foo foo = new Foo();
+    whenBenchmarked(foo, 3, 5).getObject();
+    thenReturned(object);
+  }
+
+  public class Counter {
+    public int count;
+
+    public int increment(int value) {
+      return count += value;
+    }
+  }
+
+  public class Foo {
+    public Object getObject() {
+      return object;
+    }
+  }
+
+  @Test
+  public void should_succeed_if_fast_enough() {
+    whenBenchmarked(new Closure() {
+      public Object invoke() {
+        return object;
+      }
+    }, 100, 1000);
+    thenMeanWithin(1, TimeUnit.SECONDS);
+    thenPercentileWithin(50, 1, TimeUnit.SECONDS);
+    thenPercentileWithin(99.9, 1, TimeUnit.SECONDS);
+    thenThroughputAtLeast(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void should_fail_if_mean_is_too_long() {
+    whenBenchmarked(sleeping(), 0, 2);
+    try {
+      thenMeanWithin(1, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected mean within\n" //
+          + "    1 milliseconds\n" //
+          + "  but was\n"));
+      assertTrue(e.getMessage(), e.getMessage().contains("  benchmark\n    2 iterations, mean "));
+    }
+  }
+
+  @Test
+  public void should_fail_if_percentile_is_too_long() {
+    whenBenchmarked(sleeping(), 0, 2);
+    try {
+      thenPercentileWithin(99.9, 1, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected p99.9 within\n" //
+          + "    1 milliseconds\n" //
+          + "  but was\n"));
+    }
+  }
+
+  @Test
+  public void should_fail_if_throughput_is_too_low() {
+    whenBenchmarked(sleeping(), 0, 2);
+    try {
+      thenThroughputAtLeast(1000, TimeUnit.SECONDS);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected throughput at least\n" //
+          + "    1000.0 per second\n" //
+          + "  but was\n"));
+    }
+  }
+
+  private static Closure sleeping() {
+    return new Closure() {
+      public Object invoke() throws InterruptedException {
+        Thread.sleep(5);
+        return null;
+      }
+    };
+  }
+
+  @Test
+  public void should_fail_if_when_was_not_benchmarked() {
+    when(object);
+    try {
+      thenMeanWithin(1, TimeUnit.SECONDS);
+      fail();
+    } catch (TestoryException e) {}
+  }
+}
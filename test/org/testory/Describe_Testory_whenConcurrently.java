@@ -0,0 +1,147 @@
+package org.testory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.testory.Testory.thenReturned;
+import static org.testory.Testory.thenReturnedBy;
+import static org.testory.Testory.thenReturnedByAll;
+import static org.testory.Testory.thenReturnedByAny;
+import static org.testory.Testory.thenReturnedDistinct;
+import static org.testory.Testory.thenThrownBy;
+import static org.testory.Testory.thenThrownByAll;
+import static org.testory.Testory.thenThrownByAny;
+import static org.testory.Testory.whenConcurrently;
+import static org.testory.test.TestUtils.newObject;
+import static org.testory.test.TestUtils.newThrowable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.testory.common.Closure;
+
+public class Describe_Testory_whenConcurrently {
+  private Object object;
+  private Throwable throwable;
+  private AtomicInteger counter;
+
+  @Before
+  public void before() {
+    object = newObject("object");
+    throwable = newThrowable("throwable");
+    counter = new AtomicInteger();
+  }
+
+  @Test
+  public void should_invoke_closure_by_all_threads_at_once() {
+    final CountDownLatch latch = new CountDownLatch(8);
+    whenConcurrently(8, new Closure() {
+      public Object invoke() throws InterruptedException {
+        latch.countDown();
+        return latch.await(1, TimeUnit.MINUTES);
+      }
+    });
+    thenReturnedByAll(true);
+  }
+
+  @Test
+  public void should_return_results_of_all_threads() {
+    whenConcurrently(3, new Closure() {
+      public Object invoke() {
+        return object;
+      }
+    });
+    thenReturned(new Object[] { object, object, object });
+  }
+
+  @Test
+  public void should_assert_distinct_results() {
+    whenConcurrently(64, new Closure() {
+      public Object invoke() {
+        return counter.incrementAndGet();
+      }
+    });
+    thenReturnedDistinct();
+  }
+
+  @Test
+  public void should_fail_if_results_are_not_distinct() {
+    whenConcurrently(2, new Closure() {
+      public Object invoke() {
+        return object;
+      }
+    });
+    try {
+      thenReturnedDistinct();
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertEquals("\n" //
+          + "  expected returned distinct\n" //
+          + "    \n" //
+          + "  but outcomes were\n" //
+          + "    [returned object, returned object]\n" //
+      , e.getMessage());
+    }
+  }
+
+  @Test
+  public void should_count_threads_returning_object() {
+    whenConcurrently(4, new Closure() {
+      public Object invoke() throws Throwable {
+        if (counter.incrementAndGet() == 1) {
+          throw throwable;
+        }
+        return object;
+      }
+    });
+    thenReturnedBy(3, object);
+    thenReturnedByAny(object);
+    thenThrownBy(1, throwable);
+    thenThrownByAny(Throwable.class);
+    try {
+      thenReturnedByAll(object);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected returned by all threads\n" //
+          + "    object\n" //
+          + "  but outcomes were\n"));
+      assertTrue(e.getMessage(), e.getMessage().contains("thrown throwable"));
+    }
+    try {
+      thenThrownByAll(throwable);
+      fail();
+    } catch (TestoryAssertionError e) {}
+  }
+
+  @Test
+  public void should_assert_thrown_by_all() {
+    whenConcurrently(4, new Closure() {
+      public Object invoke() throws Throwable {
+        throw throwable;
+      }
+    });
+    thenThrownByAll(throwable);
+    thenThrownBy(4, Throwable.class);
+    try {
+      thenReturnedByAny(null);
+      fail();
+    } catch (TestoryAssertionError e) {}
+  }
+
+  @Test
+  public void should_fail_if_expected_thrown_is_not_throwable_type_or_matcher() {
+    whenConcurrently(1, new Closure() {
+      public Object invoke() {
+        return object;
+      }
+    });
+    try {
+      thenThrownByAll(object);
+      fail();
+    } catch (TestoryException e) {}
+  }
+}
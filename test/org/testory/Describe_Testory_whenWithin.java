@@ -0,0 +1,231 @@
+package org.testory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.testory.Testory.thenReturned;
+import static org.testory.Testory.thenReturnedWithin;
+import static org.testory.Testory.thenThrown;
+import static org.testory.Testory.thenThrownWithin;
+import static org.testory.Testory.when;
+import static org.testory.Testory.whenWithin;
+import static org.testory.test.TestUtils.newObject;
+import static org.testory.test.TestUtils.newThrowable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.testory.common.Closure;
+
+public class Describe_Testory_whenWithin {
+  private Throwable throwable;
+  private Object object;
+  private CountDownLatch latch;
+
+  @Before
+  public void before() {
+    throwable = newThrowable("throwable");
+    object = newObject("object");
+    latch = new CountDownLatch(1);
+  }
+
+  @Test
+  public void should_record_returned_object() {
+    whenWithin(new Closure() {
+      public Object invoke() {
+        return object;
+      }
+    }, 1, TimeUnit.MINUTES);
+    thenReturned(object);
+  }
+
+  @Test
+  public void should_record_thrown_throwable() {
+    whenWithin(new Closure() {
+      public Object invoke() throws Throwable {
+        throw throwable;
+      }
+    }, 1, TimeUnit.MINUTES);
+    thenThrown(throwable);
+  }
+
+  @Test
+  public void should_invoke_closure_by_other_thread() {
+    whenWithin(new Closure() {
+      public Object invoke() {
+        return Thread.currentThread();
+      }
+    }, 1, TimeUnit.MINUTES);
+    try {
+      thenReturned(Thread.currentThread());
+      fail();
+    } catch (TestoryAssertionError e) {}
+  }
+
+  @Test
+  public void should_fail_with_stack_trace_of_hanging_closure() throws InterruptedException {
+    try {
+      whenWithin(new Closure() {
+        public Object invoke() throws InterruptedException {
+          try {
+            return hang();
+          } finally {
+            latch.countDown();
+          }
+        }
+      }, 10, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected completed within\n" //
+          + "    10 milliseconds\n" //
+          + "  but still running\n"));
+      assertTrue(e.getMessage(), e.getMessage().contains("testory-when"));
+      assertTrue(e.getMessage(), e.getMessage().contains(getClass().getName() + ".hang"));
+    }
+    assertTrue(latch.await(1, TimeUnit.MINUTES));
+  }
+
+  private static Object hang() throws InterruptedException {
+    Thread.sleep(Long.MAX_VALUE);
+    return null;
+  }
+
+  @Test
+  public void should_forward_chained_call() throws Exception {
+    Callable<Object> callable = new Callable<Object>() {
+      public Object call() {
+        return object;
+      }
+    };
+    Callable<Object> proxy = whenWithin(callable, 1, TimeUnit.MINUTES);
+    assertNotSame(callable, proxy);
+    proxy.call();
+    thenReturned(object);
+  }
+
+  @Test
+  public void should_fail_chained_call_with_stack_trace_of_caller() throws Exception {
+    Callable<Object> callable = new Callable<Object>() {
+      public Object call() throws InterruptedException {
+        return hang();
+      }
+    };
+    Callable<Object> proxy = whenWithin(callable, 10, TimeUnit.MILLISECONDS);
+    try {
+      proxy.call();
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertEquals(1, e.getStackTrace().length);
+      assertEquals(getClass().getName(), e.getStackTrace()[0].getClassName());
+    }
+  }
+
+  @Test
+  public void should_succeed_if_returned_within_time() {
+    when(new Closure() {
+      public Object invoke() {
+        return object;
+      }
+    });
+    thenReturnedWithin(object, 1, TimeUnit.MINUTES);
+  }
+
+  @Test
+  public void should_fail_if_returned_after_time() {
+    when(new Closure() {
+      public Object invoke() throws InterruptedException {
+        Thread.sleep(20);
+        return object;
+      }
+    });
+    try {
+      thenReturnedWithin(object, 10, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected returned within\n" //
+          + "    10 milliseconds\n" //
+          + "  but returned after\n"));
+    }
+  }
+
+  @Test
+  public void should_fail_if_returned_other_object_within_time() {
+    when(new Closure() {
+      public Object invoke() {
+        return object;
+      }
+    });
+    try {
+      thenReturnedWithin(newObject("other"), 1, TimeUnit.MINUTES);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertEquals("\n" //
+          + "  expected returned\n" //
+          + "    other\n" //
+          + "  but returned\n" //
+          + "    object\n" //
+      , e.getMessage());
+    }
+  }
+
+  @Test
+  public void should_time_chained_call_of_when() throws Exception {
+    Callable<Object> callable = new Callable<Object>() {
+      public Object call() throws InterruptedException {
+        Thread.sleep(20);
+        return object;
+      }
+    };
+    when(callable).call();
+    thenReturnedWithin(object, 1, TimeUnit.MINUTES);
+    try {
+      thenReturnedWithin(object, 10, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TestoryAssertionError e) {}
+  }
+
+  @Test
+  public void should_succeed_if_thrown_within_time() {
+    when(new Closure() {
+      public Object invoke() throws Throwable {
+        throw throwable;
+      }
+    });
+    thenThrownWithin(throwable, 1, TimeUnit.MINUTES);
+    thenThrownWithin(Throwable.class, 1, TimeUnit.MINUTES);
+  }
+
+  @Test
+  public void should_fail_if_thrown_after_time() {
+    when(new Closure() {
+      public Object invoke() throws Throwable {
+        Thread.sleep(20);
+        throw throwable;
+      }
+    });
+    try {
+      thenThrownWithin(Throwable.class, 10, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TestoryAssertionError e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("\n" //
+          + "  expected thrown within\n" //
+          + "    10 milliseconds\n" //
+          + "  but thrown after\n"));
+    }
+  }
+
+  @Test
+  public void should_fail_if_when_did_not_invoke_anything() {
+    when(object);
+    try {
+      thenReturnedWithin(object, 1, TimeUnit.MINUTES);
+      fail();
+    } catch (TestoryException e) {}
+  }
+}
@@ -0,0 +1,83 @@
+package org.testory.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class Describe_Histogram {
+  private Histogram histogram;
+
+  @Before
+  public void before() {
+    histogram = new Histogram();
+  }
+
+  @Test
+  public void should_record_small_values_exactly() {
+    for (int i = 1; i <= 10; i++) {
+      histogram.record(i);
+    }
+    assertEquals(10, histogram.count());
+    assertEquals(1, histogram.min());
+    assertEquals(10, histogram.max());
+    assertEquals(5.5, histogram.mean(), 0);
+    assertEquals(5, histogram.percentile(50));
+    assertEquals(10, histogram.percentile(99));
+    assertEquals(10, histogram.percentile(100));
+  }
+
+  @Test
+  public void should_approximate_percentiles_of_large_values() {
+    for (long i = 1; i <= 100000; i++) {
+      histogram.record(i * 1000);
+    }
+    assertApproximately(50000000, histogram.percentile(50));
+    assertApproximately(99000000, histogram.percentile(99));
+    assertApproximately(99900000, histogram.percentile(99.9));
+    assertEquals(100000000, histogram.max());
+  }
+
+  @Test
+  public void should_record_extreme_values() {
+    histogram.record(0);
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(0, histogram.percentile(50));
+    assertApproximately(Long.MAX_VALUE, histogram.percentile(100));
+  }
+
+  private static void assertApproximately(long expected, long actual) {
+    assertTrue(expected + " ~ " + actual, Math.abs(expected - actual) <= expected / 32);
+  }
+
+  @Test
+  public void should_fail_for_negative_value() {
+    try {
+      histogram.record(-1);
+      fail();
+    } catch (IllegalArgumentException e) {}
+  }
+
+  @Test
+  public void should_fail_for_percentile_out_of_range() {
+    histogram.record(1);
+    try {
+      histogram.percentile(0);
+      fail();
+    } catch (IllegalArgumentException e) {}
+    try {
+      histogram.percentile(101);
+      fail();
+    } catch (IllegalArgumentException e) {}
+  }
+
+  @Test
+  public void should_fail_for_empty_histogram() {
+    try {
+      histogram.mean();
+      fail();
+    } catch (IllegalArgumentException e) {}
+  }
+}
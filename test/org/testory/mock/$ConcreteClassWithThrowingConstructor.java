@@ -0,0 +1,7 @@
+package org.testory.mock;
+
+public class $ConcreteClassWithThrowingConstructor {
+  public $ConcreteClassWithThrowingConstructor() {
+    throw new RuntimeException();
+  }
+}
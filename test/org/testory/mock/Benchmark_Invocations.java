@@ -0,0 +1,65 @@
+package org.testory.mock;
+
+import static org.testory.mock.Invocation.invocation;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Measures reflective forwarding of {@link Invocations#invoke(Invocation)}, that is used by when,
+ * givenTry and givenTimes for jdk and cglib proxies, called by one and by many threads.
+ */
+public class Benchmark_Invocations {
+  private static final int invocations = 5000000;
+
+  public static class Target {
+    private int count;
+
+    public int add(int number) {
+      return count += number;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Method method = Target.class.getMethod("add", int.class);
+    int processors = Runtime.getRuntime().availableProcessors();
+    for (int round = 0; round < 3; round++) {
+      System.out.println("round " + round);
+      report(1, invoke(1, method));
+      if (processors > 1) {
+        report(processors, invoke(processors, method));
+      }
+    }
+  }
+
+  private static long invoke(int threads, final Method method) throws InterruptedException {
+    Thread[] workers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Thread(new Runnable() {
+        public void run() {
+          Invocation invocation = invocation(method, new Target(), Arrays.<Object> asList(1));
+          try {
+            for (int j = 0; j < invocations; j++) {
+              Invocations.invoke(invocation);
+            }
+          } catch (Throwable throwable) {
+            throw new Error(throwable);
+          }
+        }
+      });
+    }
+    long start = System.nanoTime();
+    for (Thread worker : workers) {
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static void report(int threads, long nanos) {
+    System.out.println(String.format("  %3d threads %10.1f ns/op", threads, (double) nanos
+        / invocations / threads));
+  }
+}
@@ -0,0 +1,80 @@
+package org.testory.mock;
+
+import static org.testory.mock.Typing.typing;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compares generating and invoking proxies of each built-in {@link Engine} on same interface-only
+ * typing. Engines able to extend classes are then compared on typing, that differs just by empty
+ * public superclass.
+ */
+public class Benchmark_Mocks {
+  private static final int generations = 2000;
+  private static final int invocations = 10000000;
+  private static final Typing interfaceTyping = typing(Object.class, interfaces(Runnable.class));
+  private static final Typing classTyping = typing($ConcreteClass.class, interfaces(Runnable.class));
+  private static final Handler handler = new Handler() {
+    public Object handle(Invocation invocation) {
+      return null;
+    }
+  };
+  private static final Handler primitiveHandler = new PrimitiveHandler() {
+    public long handlePrimitive(Call call) {
+      return 0;
+    }
+
+    public Object handleObject(Call call) {
+      return null;
+    }
+  };
+
+  public static void main(String[] args) {
+    for (int round = 0; round < 3; round++) {
+      System.out.println("round " + round);
+      benchmark("jdk", new JdkProxyEngine(), interfaceTyping);
+      benchmark("hidden", new HiddenClassEngine(), interfaceTyping);
+      benchmark("cglib", new CglibEngine(), interfaceTyping);
+      benchmark("hidden class", new HiddenClassEngine(), classTyping);
+      benchmark("cglib class", new CglibEngine(), classTyping);
+    }
+  }
+
+  private static void benchmark(String name, Engine engine, Typing typing) {
+    if (engine.proxyClass(typing, Benchmark_Mocks.class.getClassLoader()) != null) {
+      report(name + " generation", generations, generate(engine, typing));
+      report(name + " invocation", invocations, invoke(engine, typing, handler));
+      report(name + " primitive", invocations, invoke(engine, typing, primitiveHandler));
+    }
+  }
+
+  /** each proxy class is generated in fresh class loader, so it is never cached */
+  private static long generate(Engine engine, Typing typing) {
+    ClassLoader parent = Benchmark_Mocks.class.getClassLoader();
+    long start = System.nanoTime();
+    for (int i = 0; i < generations; i++) {
+      engine.proxyClass(typing, new ClassLoader(parent) {});
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long invoke(Engine engine, Typing typing, Handler handler) {
+    Runnable mock = (Runnable) engine.proxyClass(typing, Benchmark_Mocks.class.getClassLoader())
+        .newProxy(handler);
+    long start = System.nanoTime();
+    for (int i = 0; i < invocations; i++) {
+      mock.run();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static void report(String name, int count, long nanos) {
+    System.out.println(String.format("  %-24s %10.1f ns/op", name, (double) nanos / count));
+  }
+
+  private static Set<Class<?>> interfaces(Class<?>... elements) {
+    return new HashSet<Class<?>>(Arrays.asList(elements));
+  }
+}
@@ -0,0 +1,92 @@
+package org.testory.mock;
+
+import static org.testory.mock.Typing.typing;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures throughput of {@link Mocks#mock(Typing, Handler)} called by growing number of threads,
+ * like tests running in parallel. Cached proxy classes are found without locks, so throughput should
+ * scale nearly linearly up to number of processors. Before each measurement, all threads mock
+ * typing, which proxy class is not generated yet, and it should be generated only once. Number of
+ * threads is doubled up to number of processors or up to number given as argument.
+ */
+public class Benchmark_Mocks_concurrently {
+  private static final long millis = 1000;
+  private static final Typing typing = typing($ConcreteClass.class, interfaces(Runnable.class));
+  private static final Handler handler = new Handler() {
+    public Object handle(Invocation invocation) {
+      return null;
+    }
+  };
+
+  public static void main(String[] args) throws InterruptedException {
+    int processors = args.length > 0
+        ? Integer.parseInt(args[0])
+        : Runtime.getRuntime().availableProcessors();
+    Mocks.mock(typing, handler);
+    for (int round = 0; round < 3; round++) {
+      System.out.println("round " + round);
+      double single = 0;
+      for (int threads = 1; threads <= processors; threads *= 2) {
+        long misses = Mocks.proxyClassMisses();
+        run(threads, new ClassLoader(Benchmark_Mocks_concurrently.class.getClassLoader()) {}, 1);
+        long generated = Mocks.proxyClassMisses() - misses;
+        double throughput = run(threads, null, Long.MAX_VALUE);
+        single = threads == 1
+            ? throughput
+            : single;
+        System.out.println(String.format("  %3d threads %12.0f mocks/s %6.2fx scaling %d generated",
+            threads, throughput, throughput / single, generated));
+      }
+    }
+  }
+
+  /**
+   * Returns mocks per second created by <b>threads</b>, each creating at most <b>mocks</b> in
+   * context of <b>loader</b>.
+   */
+  private static double run(int threads, final ClassLoader loader, final long mocks)
+      throws InterruptedException {
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicLong created = new AtomicLong();
+    final long[] deadline = new long[1];
+    Thread[] workers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Thread(new Runnable() {
+        public void run() {
+          if (loader != null) {
+            Thread.currentThread().setContextClassLoader(loader);
+          }
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new Error(e);
+          }
+          long count = 0;
+          while (count < mocks && System.nanoTime() < deadline[0]) {
+            Mocks.mock(typing, handler);
+            count++;
+          }
+          created.addAndGet(count);
+        }
+      });
+      workers[i].start();
+    }
+    long begin = System.nanoTime();
+    deadline[0] = begin + millis * 1000000;
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    return created.get() * 1e9 / (System.nanoTime() - begin);
+  }
+
+  private static Set<Class<?>> interfaces(Class<?>... elements) {
+    return new HashSet<Class<?>>(Arrays.asList(elements));
+  }
+}
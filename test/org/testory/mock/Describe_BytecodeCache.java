@@ -0,0 +1,125 @@
+package org.testory.mock;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+import static org.testory.mock.Typing.typing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Describe_BytecodeCache {
+  private File directory;
+  private BytecodeCache cache;
+  private ClassLoader loader;
+  private Typing typing;
+  private String key;
+  private byte[] bytes;
+
+  @Before
+  public void before() throws IOException {
+    directory = File.createTempFile("testory", "cache");
+    directory.delete();
+    cache = new BytecodeCache(directory);
+    loader = getClass().getClassLoader();
+    typing = typing($ConcreteClass.class, interfaces($InterfaceA.class));
+    bytes = new byte[] { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0 };
+  }
+
+  @After
+  public void after() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void should_compute_same_key_for_same_typing() {
+    assertEquals(cache.keyOf("engine", typing),
+        cache.keyOf("engine", typing($ConcreteClass.class, interfaces($InterfaceA.class))));
+  }
+
+  @Test
+  public void should_compute_different_key_for_different_typing() {
+    key = cache.keyOf("engine", typing);
+    assertFalse(key.equals(cache.keyOf("engine",
+        typing($ConcreteClass.class, interfaces($InterfaceB.class)))));
+  }
+
+  @Test
+  public void should_compute_different_key_for_different_engine() {
+    key = cache.keyOf("engine", typing);
+    assertFalse(key.equals(cache.keyOf("otherEngine", typing)));
+  }
+
+  @Test
+  public void should_read_written_bytes() {
+    key = cache.keyOf("engine", typing);
+    cache.write(key, bytes);
+    assertArrayEquals(bytes, cache.read(key));
+  }
+
+  @Test
+  public void should_read_null_if_not_written() {
+    key = cache.keyOf("engine", typing);
+    assertNull(cache.read(key));
+  }
+
+  @Test
+  public void should_ignore_bytes_that_are_not_class_file() {
+    key = cache.keyOf("engine", typing);
+    cache.write(key, new byte[] { 1, 2, 3, 4, 5 });
+    assertNull(cache.read(key));
+  }
+
+  @Test
+  public void should_leave_no_temporary_files() {
+    key = cache.keyOf("engine", typing);
+    cache.write(key, bytes);
+    cache.write(key, bytes);
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  @Test
+  public void should_cache_bytecode_of_hidden_class_engine() {
+    assumeTrue(HiddenClassEngine.isSupported());
+    new HiddenClassEngine(cache).proxyClass(typing, loader);
+    assertNotNull(cache.read(cache.keyOf("hidden", typing)));
+    ProxyClass proxyClass = new HiddenClassEngine(cache).proxyClass(typing, loader);
+    assertEquals("toString", proxyClass.newProxy(new Handler() {
+      public Object handle(Invocation invocation) {
+        return invocation.method.getName();
+      }
+    }).toString());
+  }
+
+  @Test
+  public void should_cache_bytecode_of_cglib_engine() {
+    new CglibEngine(cache).proxyClass(typing, new ClassLoader(loader) {});
+    assertNotNull(cache.read(cache.keyOf("cglib", typing)));
+    ProxyClass proxyClass = new CglibEngine(cache).proxyClass(typing, new ClassLoader(loader) {});
+    assertEquals("toString", proxyClass.newProxy(new Handler() {
+      public Object handle(Invocation invocation) {
+        return invocation.method.getName();
+      }
+    }).toString());
+  }
+
+  private static Set<Class<?>> interfaces(Class<?>... elements) {
+    return new HashSet<Class<?>>(Arrays.asList(elements));
+  }
+}
@@ -0,0 +1,203 @@
+package org.testory.mock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static org.testory.mock.Mocks.mock;
+import static org.testory.mock.Typing.typing;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class Describe_Call_forwardTo {
+  private Target target;
+  private Target proxy;
+  private Object object;
+
+  @Before
+  public void before() {
+    target = new Target();
+    object = new Object();
+  }
+
+  @Test
+  public void should_forward_primitives() {
+    proxy = forwardingProxy(Target.class);
+    assertEquals(3, proxy.add(1, 2));
+    assertEquals(3L, proxy.add(1L, 2L));
+    assertEquals(1.5f, proxy.add(1f, 0.5f), 0);
+    assertEquals(-1.5, proxy.add(-1.0, -0.5), 0);
+    assertEquals(true, proxy.negate(false));
+    assertEquals('d', proxy.next('c'));
+  }
+
+  @Test
+  public void should_forward_references() {
+    proxy = forwardingProxy(Target.class);
+    assertSame(object, proxy.identity(object));
+    assertEquals("ab", proxy.concat("a", "b"));
+  }
+
+  @Test
+  public void should_forward_void_method() {
+    proxy = forwardingProxy(Target.class);
+    proxy.set(object);
+    assertSame(object, target.field);
+  }
+
+  @Test
+  public void should_forward_package_private_method() {
+    proxy = forwardingProxy(Target.class);
+    assertEquals(5, proxy.packagePrivate(5));
+  }
+
+  @Test
+  public void should_forward_protected_method() {
+    proxy = forwardingProxy(Target.class);
+    assertEquals(7, proxy.protectedd(7));
+  }
+
+  @Test
+  public void should_forward_to_subclass_of_target() {
+    target = new Target() {
+      public int add(int a, int b) {
+        return a * b;
+      }
+    };
+    proxy = forwardingProxy(Target.class);
+    assertEquals(6, proxy.add(2, 3));
+  }
+
+  @Test
+  public void should_throw_throwable_from_target() {
+    proxy = forwardingProxy(Target.class);
+    try {
+      proxy.fail();
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("fail", e.getMessage());
+    }
+  }
+
+  /** frames of hidden forwarder are not visible */
+  @Test
+  public void should_forward_generated_proxy_without_reflection() {
+    assumeTrue(HiddenClassEngine.isSupported());
+    proxy = forwardingProxy(Target.class);
+    assertEquals(DispatchingProxyClass.class.getName(), proxy.stackTrace()[1].getClassName());
+  }
+
+  @Test
+  public void should_forward_jdk_proxy_reflectively() {
+    final Runnable runnable = new Runnable() {
+      public void run() {
+        target.field = object;
+      }
+    };
+    Runnable forwarding = (Runnable) mock(typing(Object.class, interfaces(Runnable.class)),
+        new PrimitiveHandler() {
+          public long handlePrimitive(Call call) throws Throwable {
+            return call.forwardPrimitiveTo(runnable);
+          }
+
+          public Object handleObject(Call call) throws Throwable {
+            return call.forwardTo(runnable);
+          }
+        });
+    forwarding.run();
+    assertSame(object, target.field);
+  }
+
+  @Test
+  public void should_forward_boxing_primitive_result() {
+    proxy = (Target) mock(typing(Target.class, interfaces()), new PrimitiveHandler() {
+      public long handlePrimitive(Call call) throws Throwable {
+        object = call.forwardTo(target);
+        return 0;
+      }
+
+      public Object handleObject(Call call) {
+        return null;
+      }
+    });
+    proxy.add(1, 2);
+    assertEquals(3, object);
+  }
+
+  private Target forwardingProxy(Class<? extends Target> type) {
+    return (Target) mock(typing(type, interfaces()), new PrimitiveHandler() {
+      public long handlePrimitive(Call call) throws Throwable {
+        return call.forwardPrimitiveTo(target);
+      }
+
+      public Object handleObject(Call call) throws Throwable {
+        return call.forwardTo(target);
+      }
+    });
+  }
+
+  public static class Target {
+    Object field;
+
+    public int add(int a, int b) {
+      return a + b;
+    }
+
+    public long add(long a, long b) {
+      return a + b;
+    }
+
+    public float add(float a, float b) {
+      return a + b;
+    }
+
+    public double add(double a, double b) {
+      return a + b;
+    }
+
+    public boolean negate(boolean a) {
+      return !a;
+    }
+
+    public char next(char a) {
+      return (char) (a + 1);
+    }
+
+    public Object identity(Object a) {
+      return a;
+    }
+
+    public String concat(String a, String b) {
+      return a + b;
+    }
+
+    public void set(Object a) {
+      field = a;
+    }
+
+    int packagePrivate(int a) {
+      return a;
+    }
+
+    protected int protectedd(int a) {
+      return a;
+    }
+
+    public void fail() {
+      throw new IllegalStateException("fail");
+    }
+
+    public StackTraceElement[] stackTrace() {
+      return new Throwable().getStackTrace();
+    }
+  }
+
+  private static Set<Class<?>> interfaces(Class<?>... elements) {
+    return new HashSet<Class<?>>(Arrays.asList(elements));
+  }
+}
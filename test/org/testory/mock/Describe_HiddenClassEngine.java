@@ -0,0 +1,83 @@
+package org.testory.mock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.testory.mock.Typing.typing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class Describe_HiddenClassEngine {
+  private Engine engine;
+  private ClassLoader loader;
+  private Handler handler;
+  private ProxyClass proxyClass;
+  private Object proxy;
+
+  @Before
+  public void before() {
+    assumeTrue(HiddenClassEngine.isSupported());
+    engine = new HiddenClassEngine();
+    loader = getClass().getClassLoader();
+    handler = new Handler() {
+      public Object handle(Invocation invocation) {
+        return invocation.method.getName();
+      }
+    };
+  }
+
+  @Test
+  public void should_generate_hidden_class() {
+    proxyClass = engine.proxyClass(typing($ConcreteClass.class, interfaces()), loader);
+    assertTrue(HiddenClassEngine.isHidden(proxyClass.type));
+  }
+
+  @Test
+  public void should_generate_class_in_package_of_superclass() {
+    proxyClass = engine.proxyClass(typing($PackagePrivateConcreteClass.class, interfaces()), loader);
+    assertEquals($PackagePrivateConcreteClass.class.getPackage(), proxyClass.type.getPackage());
+  }
+
+  @Test
+  public void should_dispatch_to_handler() {
+    proxyClass = engine.proxyClass(typing($ConcreteClass.class, interfaces($InterfaceA.class)),
+        loader);
+    proxy = proxyClass.newProxy(handler);
+    assertEquals("toString", proxy.toString());
+  }
+
+  @Test
+  public void should_dispatch_primitive_arguments_and_results() {
+    proxyClass = engine.proxyClass(typing(Object.class, interfaces(Comparable.class)), loader);
+    proxy = proxyClass.newProxy(new Handler() {
+      public Object handle(Invocation invocation) {
+        return invocation.method.getName().equals("hashCode")
+            ? 7
+            : null;
+      }
+    });
+    assertEquals(7, proxy.hashCode());
+    assertEquals(0, ((Comparable<Object>) proxy).compareTo(proxy));
+  }
+
+  @Test
+  public void should_not_generate_proxy_of_final_class() {
+    assertNull(engine.proxyClass(typing($FinalClass.class, interfaces()), loader));
+  }
+
+  @Test
+  public void should_not_generate_proxy_in_closed_package() {
+    assertNull(engine.proxyClass(typing(ArrayList.class, interfaces()), loader));
+  }
+
+  private static Set<Class<?>> interfaces(Class<?>... elements) {
+    return new HashSet<Class<?>>(Arrays.asList(elements));
+  }
+}
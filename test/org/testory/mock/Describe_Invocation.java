@@ -102,6 +102,63 @@ public class Describe_Invocation {
     invocation(method, instance, arguments);
   }
 
+  @Test
+  public void should_unbox_and_widen_character() throws NoSuchMethodException {
+    class Foo {
+      @SuppressWarnings("unused")
+      void foo(int arg) {}
+    }
+    method = Foo.class.getDeclaredMethod("foo", new Class[] { int.class });
+    instance = new Foo();
+    arguments = Arrays.asList('c');
+    invocation(method, instance, arguments);
+  }
+
+  @Test
+  public void should_fail_for_narrowing_wrapper() throws NoSuchMethodException {
+    class Foo {
+      @SuppressWarnings("unused")
+      void foo(short arg) {}
+    }
+    method = Foo.class.getDeclaredMethod("foo", new Class[] { short.class });
+    instance = new Foo();
+    arguments = Arrays.asList(5);
+    try {
+      invocation(method, instance, arguments);
+      fail();
+    } catch (IllegalArgumentException e) {}
+  }
+
+  @Test
+  public void should_fail_for_number_and_boolean_parameter() throws NoSuchMethodException {
+    class Foo {
+      @SuppressWarnings("unused")
+      void foo(boolean arg) {}
+    }
+    method = Foo.class.getDeclaredMethod("foo", new Class[] { boolean.class });
+    instance = new Foo();
+    arguments = Arrays.asList(1);
+    try {
+      invocation(method, instance, arguments);
+      fail();
+    } catch (IllegalArgumentException e) {}
+  }
+
+  @Test
+  public void should_fail_for_null_and_primitive_parameter() throws NoSuchMethodException {
+    class Foo {
+      @SuppressWarnings("unused")
+      void foo(int arg) {}
+    }
+    method = Foo.class.getDeclaredMethod("foo", new Class[] { int.class });
+    instance = new Foo();
+    arguments = Arrays.asList((Object) null);
+    try {
+      invocation(method, instance, arguments);
+      fail();
+    } catch (IllegalArgumentException e) {}
+  }
+
   @Test
   public void should_fail_for_too_many_arguments() throws NoSuchMethodException {
     class Foo {
@@ -57,6 +57,23 @@ public class Describe_Invocations_invoke {
     }
   }
 
+  @Test
+  public void should_invoke_equal_method_obtained_separately() throws Throwable {
+    invoke(invocation(method, host, Arrays.asList(argument)));
+    invocation = invocation(Host.class.getDeclaredMethod("method", Object.class), host,
+        Arrays.asList(object));
+    given(host.method(object)).willReturn(argument);
+    assertEquals(argument, invoke(invocation));
+  }
+
+  @Test
+  public void should_invoke_retargeted_invocation() throws Throwable {
+    Host otherHost = mock(Host.class);
+    invocation = invocation(method, host, Arrays.asList(argument));
+    given(otherHost.method(argument)).willReturn(object);
+    assertEquals(object, invoke(Invocations.on(otherHost, invocation)));
+  }
+
   @Test
   public void should_fail_for_null_invocation() throws Throwable {
     try {
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 import static org.testory.mock.Invocation.invocation;
 import static org.testory.mock.Mocks.mock;
 import static org.testory.mock.Typing.typing;
@@ -12,12 +13,13 @@ import static org.testory.test.TestUtils.newThrowable;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -85,6 +87,13 @@ public class Describe_Mock {
     assertTrue(mock instanceof $AbstractClassWithProtectedAbstractMethod);
   }
 
+  @Test
+  public void should_create_mock_extending_class_from_closed_package() {
+    typing = typing(ArrayList.class, interfaces());
+    mock = mock(typing, handler);
+    assertTrue(mock instanceof ArrayList);
+  }
+
   @Test
   public void should_create_mock_implementing_many_interfaces() {
     typing = typing(Object.class,
@@ -95,8 +104,6 @@ public class Describe_Mock {
     assertTrue(mock instanceof $InterfaceC);
   }
 
-  // TODO fix: mock of package private interfaces
-  @Ignore
   @Test
   public void should_create_mock_implementing_many_package_private_interfaces() {
     typing = typing(
@@ -159,6 +166,146 @@ public class Describe_Mock {
     assertTrue(mock instanceof $InterfaceA);
   }
 
+  @Test
+  public void should_reuse_proxy_class_for_equal_typings() {
+    typing = typing($ConcreteClass.class, interfaces($InterfaceA.class));
+    Object otherMock = mock(typing, handler);
+    long hits = Mocks.proxyClassHits();
+    long misses = Mocks.proxyClassMisses();
+    mock = mock(typing($ConcreteClass.class, interfaces($InterfaceA.class)), handler);
+    assertSame(otherMock.getClass(), mock.getClass());
+    assertEquals(hits + 1, Mocks.proxyClassHits());
+    assertEquals(misses, Mocks.proxyClassMisses());
+  }
+
+  @Test
+  public void should_reuse_proxy_classes_warmed_up_in_background() {
+    class SuperclassA {}
+    class SuperclassB {}
+    long misses = Mocks.proxyClassMisses();
+    Mocks.warmUp(Arrays.asList(typing(SuperclassA.class, interfaces()),
+        typing(SuperclassB.class, interfaces())));
+    mock = mock(typing(SuperclassA.class, interfaces()), handler);
+    mock = mock(typing(SuperclassB.class, interfaces()), handler);
+    assertEquals(misses + 2, Mocks.proxyClassMisses());
+  }
+
+  @Test
+  public void should_reuse_proxy_class_generated_in_bridged_class_loader() {
+    Thread thread = Thread.currentThread();
+    ClassLoader contextClassLoader = thread.getContextClassLoader();
+    thread.setContextClassLoader(new ClassLoader(contextClassLoader) {});
+    class Superclass {}
+    typing = typing(Superclass.class, interfaces());
+    try {
+      int liveProxyClasses = Mocks.liveProxyClasses();
+      Object otherMock = mock(typing, handler);
+      mock = mock(typing, handler);
+      assertSame(otherMock.getClass(), mock.getClass());
+      assertEquals(liveProxyClasses + 1, Mocks.liveProxyClasses());
+    } finally {
+      thread.setContextClassLoader(contextClassLoader);
+    }
+  }
+
+  @Test
+  public void should_reuse_proxy_class_after_gc_under_other_context_class_loader() {
+    Thread thread = Thread.currentThread();
+    ClassLoader contextClassLoader = thread.getContextClassLoader();
+    thread.setContextClassLoader(new ClassLoader(contextClassLoader) {});
+    class Superclass {}
+    typing = typing(Superclass.class, interfaces());
+    try {
+      Object otherMock = mock(typing, handler);
+      long misses = Mocks.proxyClassMisses();
+      for (int i = 0; i < 3; i++) {
+        System.gc();
+        mock = mock(typing, handler);
+        assertSame(otherMock.getClass(), mock.getClass());
+      }
+      assertEquals(misses, Mocks.proxyClassMisses());
+    } finally {
+      thread.setContextClassLoader(contextClassLoader);
+    }
+  }
+
+  @Test
+  public void should_reuse_hidden_proxy_class_under_any_context_class_loader() {
+    assumeTrue(HiddenClassEngine.isSupported());
+    Thread thread = Thread.currentThread();
+    ClassLoader contextClassLoader = thread.getContextClassLoader();
+    class Superclass {}
+    typing = typing(Superclass.class, interfaces());
+    try {
+      thread.setContextClassLoader(new ClassLoader(contextClassLoader) {});
+      Object otherMock = mock(typing, handler);
+      long misses = Mocks.proxyClassMisses();
+      thread.setContextClassLoader(new ClassLoader(contextClassLoader) {});
+      mock = mock(typing, handler);
+      assertSame(otherMock.getClass(), mock.getClass());
+      assertEquals(misses, Mocks.proxyClassMisses());
+    } finally {
+      thread.setContextClassLoader(contextClassLoader);
+    }
+  }
+
+  @Test
+  public void should_generate_proxy_class_once_for_mocks_created_concurrently()
+      throws InterruptedException {
+    class Superclass {}
+    final Typing concurrentTyping = typing(Superclass.class, interfaces());
+    final Object[] mocks = new Object[8];
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[mocks.length];
+    long misses = Mocks.proxyClassMisses();
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new Error(e);
+          }
+          mocks[index] = mock(concurrentTyping, handler);
+        }
+      });
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (Object concurrentMock : mocks) {
+      assertSame(mocks[0].getClass(), concurrentMock.getClass());
+    }
+    assertEquals(misses + 1, Mocks.proxyClassMisses());
+  }
+
+  @Test
+  public void should_not_share_handlers_between_mocks_of_equal_typings() {
+    mock = mock(typing, new Handler() {
+      public Object handle(Invocation invocation) {
+        return "first";
+      }
+    });
+    Object otherMock = mock(typing, new Handler() {
+      public Object handle(Invocation invocation) {
+        return "second";
+      }
+    });
+    assertEquals("first", mock.toString());
+    assertEquals("second", otherMock.toString());
+  }
+
+  @Test
+  public void should_not_invoke_constructor_of_superclass() {
+    typing = typing($ConcreteClassWithThrowingConstructor.class, interfaces());
+    mock = mock(typing, handler);
+    mock = mock(typing, handler);
+    assertTrue(mock instanceof $ConcreteClassWithThrowingConstructor);
+  }
+
   @Test
   public final void should_intercept_invocation() throws NoSuchMethodException {
     class Foo {
@@ -295,6 +442,12 @@ public class Describe_Mock {
     assertEquals(0, ((Foo) mock).foo());
   }
 
+  @Test
+  public void should_null_returned_by_handler_be_converted_to_zero_for_interface() {
+    mock = mock(typing(Object.class, interfaces(Comparable.class)), handler);
+    assertEquals(0, ((Comparable<Object>) mock).compareTo(object));
+  }
+
   @Test
   public void should_not_create_mock_extending_final_type() {
     try {
@@ -0,0 +1,132 @@
+package org.testory.mock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.testory.mock.Typing.typing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class Describe_PregeneratedEngine {
+  private Engine engine;
+  private Typing typing;
+  private ClassLoader loader;
+  private ByteArrayOutputStream jar;
+
+  @Before
+  public void before() {
+    engine = new PregeneratedEngine();
+    loader = getClass().getClassLoader();
+    jar = new ByteArrayOutputStream();
+  }
+
+  @Test
+  public void should_write_proxy_class_in_package_of_superclass() throws IOException {
+    typing = typing($ConcreteClass.class, interfaces($InterfaceA.class));
+    Mocks.pregenerate(Arrays.asList(typing), jar);
+    List<String> names = entries(jar.toByteArray());
+    assertEquals(1, names.size());
+    assertTrue(names.get(0).startsWith("org/testory/mock/$ConcreteClass$$TestoryMock$$"));
+  }
+
+  @Test
+  public void should_write_proxy_class_of_interfaces_in_testory_package() throws IOException {
+    typing = typing(Object.class, interfaces($InterfaceA.class));
+    Mocks.pregenerate(Arrays.asList(typing), jar);
+    assertTrue(entries(jar.toByteArray()).get(0).startsWith("org/testory/mock/Object$$"));
+  }
+
+  @Test
+  public void should_write_proxy_class_once_for_equal_typings() throws IOException {
+    typing = typing($ConcreteClass.class, interfaces());
+    Mocks.pregenerate(Arrays.asList(typing, typing($ConcreteClass.class, interfaces())), jar);
+    assertEquals(1, entries(jar.toByteArray()).size());
+  }
+
+  @Test
+  public void should_skip_typing_that_cannot_be_generated() throws IOException {
+    typing = typing($FinalClass.class, interfaces());
+    Mocks.pregenerate(Arrays.asList(typing), jar);
+    assertEquals(0, entries(jar.toByteArray()).size());
+  }
+
+  @Test
+  public void should_not_find_proxy_class_that_is_not_on_classpath() {
+    typing = typing($ConcreteClassWithClone.class, interfaces($InterfaceB.class));
+    assertNull(engine.proxyClass(typing, loader));
+  }
+
+  @Test
+  public void should_find_proxy_class_loaded_by_loader_of_superclass() throws Exception {
+    Method defineClass = lookupDefineClass();
+    assumeTrue(defineClass != null);
+    typing = typing($ConcreteClass.class, interfaces($InterfaceC.class));
+    Mocks.pregenerate(Arrays.asList(typing), jar);
+    Class<?> pregenerated = (Class<?>) defineClass.invoke(lookup(), onlyClass(jar.toByteArray()));
+
+    ProxyClass proxyClass = engine.proxyClass(typing, loader);
+    assertSame(pregenerated, proxyClass.type);
+    Object proxy = proxyClass.newProxy(new Handler() {
+      public Object handle(Invocation invocation) {
+        return "handled";
+      }
+    });
+    assertEquals("handled", proxy.toString());
+    assertFalse(HiddenClassEngine.isHidden(proxyClass.type));
+  }
+
+  private static List<String> entries(byte[] jar) throws IOException {
+    JarInputStream input = new JarInputStream(new ByteArrayInputStream(jar));
+    List<String> names = new ArrayList<String>();
+    JarEntry entry;
+    while ((entry = input.getNextJarEntry()) != null) {
+      names.add(entry.getName());
+    }
+    return names;
+  }
+
+  private static byte[] onlyClass(byte[] jar) throws IOException {
+    JarInputStream input = new JarInputStream(new ByteArrayInputStream(jar));
+    input.getNextJarEntry();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int count;
+    while ((count = input.read(buffer)) != -1) {
+      output.write(buffer, 0, count);
+    }
+    return output.toByteArray();
+  }
+
+  private static Object lookup() throws Exception {
+    return Class.forName("java.lang.invoke.MethodHandles").getMethod("lookup").invoke(null);
+  }
+
+  private static Method lookupDefineClass() {
+    try {
+      return Class.forName("java.lang.invoke.MethodHandles$Lookup").getMethod("defineClass",
+          byte[].class);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static Set<Class<?>> interfaces(Class<?>... elements) {
+    return new HashSet<Class<?>>(Arrays.asList(elements));
+  }
+}
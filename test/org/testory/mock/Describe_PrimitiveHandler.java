@@ -0,0 +1,198 @@
+package org.testory.mock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.testory.mock.Mocks.mock;
+import static org.testory.mock.Typing.typing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class Describe_PrimitiveHandler {
+  private List<Object> arguments;
+  private Object object;
+  private Arithmetic arithmetic;
+
+  @Before
+  public void before() {
+    arguments = new ArrayList<Object>();
+    object = new Object();
+  }
+
+  @Test
+  public void should_pass_primitive_arguments_of_generated_proxy() {
+    arithmetic = (Arithmetic) mock(typing(Arithmetic.class, interfaces()), new Recording());
+    arithmetic.all(true, 'c', (byte) -1, (short) -2, -3, -4L, 0.5f, -0.25, object);
+    assertEquals(Arrays.asList(true, 'c', (byte) -1, (short) -2, -3, -4L, 0.5f, -0.25, object),
+        arguments);
+  }
+
+  @Test
+  public void should_pass_primitive_arguments_of_jdk_proxy() {
+    Operations operations = (Operations) mock(typing(Object.class, interfaces(Operations.class)),
+        new Recording());
+    operations.all(true, 'c', (byte) -1, (short) -2, -3, -4L, 0.5f, -0.25, object);
+    assertEquals(Arrays.asList(true, 'c', (byte) -1, (short) -2, -3, -4L, 0.5f, -0.25, object),
+        arguments);
+  }
+
+  @Test
+  public void should_return_primitive_results() {
+    arithmetic = (Arithmetic) mock(typing(Arithmetic.class, interfaces()), new Returning());
+    assertEquals(true, arithmetic.negate(false));
+    assertEquals('d', arithmetic.next('c'));
+    assertEquals(3, arithmetic.add(1, 2));
+    assertEquals(Long.MIN_VALUE, arithmetic.add(Long.MIN_VALUE, 0L));
+    assertEquals(1.5f, arithmetic.add(1f, 0.5f), 0);
+    assertEquals(-1.5, arithmetic.add(-1.0, -0.5), 0);
+    assertSame(object, arithmetic.identity(object));
+  }
+
+  @Test
+  public void should_return_primitive_results_of_jdk_proxy() {
+    Operations operations = (Operations) mock(typing(Object.class, interfaces(Operations.class)),
+        new Returning());
+    assertEquals(3, operations.add(1, 2));
+    assertEquals(-1.5, operations.add(-1.0, -0.5), 0);
+  }
+
+  @Test
+  public void should_identify_method_of_generated_proxy_by_stable_index() {
+    final List<Integer> indexes = new ArrayList<Integer>();
+    PrimitiveHandler handler = new Returning() {
+      public long handlePrimitive(Call call) throws Throwable {
+        indexes.add(call.index());
+        return super.handlePrimitive(call);
+      }
+    };
+    arithmetic = (Arithmetic) mock(typing(Arithmetic.class, interfaces()), handler);
+    arithmetic.add(1, 2);
+    arithmetic.add(1L, 2L);
+    arithmetic = (Arithmetic) mock(typing(Arithmetic.class, interfaces()), handler);
+    arithmetic.add(1, 2);
+    assertTrue(indexes.get(0) >= 0);
+    assertTrue(!indexes.get(0).equals(indexes.get(1)));
+    assertEquals(indexes.get(0), indexes.get(2));
+  }
+
+  @Test
+  public void should_keep_arguments_of_outer_call_during_nested_call() {
+    arithmetic = (Arithmetic) mock(typing(Arithmetic.class, interfaces()), new Returning() {
+      public long handlePrimitive(Call call) throws Throwable {
+        if (call.method().getName().equals("add") && call.intAt(0) == 1) {
+          long nested = ((Arithmetic) call.proxy()).add(10, 20);
+          return nested + call.intAt(0) + call.intAt(1);
+        }
+        return super.handlePrimitive(call);
+      }
+    });
+    assertEquals(33, arithmetic.add(1, 2));
+  }
+
+  @Test
+  public void should_release_call_if_handler_throws() {
+    final RuntimeException exception = new RuntimeException();
+    arithmetic = (Arithmetic) mock(typing(Arithmetic.class, interfaces()), new Returning() {
+      public long handlePrimitive(Call call) throws Throwable {
+        if (call.intAt(0) == 0) {
+          throw exception;
+        }
+        return super.handlePrimitive(call);
+      }
+    });
+    try {
+      arithmetic.add(0, 1);
+      fail();
+    } catch (RuntimeException e) {
+      assertSame(exception, e);
+    }
+    assertEquals(5, arithmetic.add(2, 3));
+  }
+
+  @Test
+  public void should_convert_call_to_invocation() throws NoSuchMethodException {
+    final List<Invocation> invocations = new ArrayList<Invocation>();
+    arithmetic = (Arithmetic) mock(typing(Arithmetic.class, interfaces()), new Returning() {
+      public Object handleObject(Call call) {
+        invocations.add(call.toInvocation());
+        return null;
+      }
+    });
+    assertNull(arithmetic.identity(object));
+    assertEquals(Invocation.invocation(Arithmetic.class.getMethod("identity", Object.class),
+        arithmetic, Arrays.asList(object)), invocations.get(0));
+  }
+
+  private class Recording extends PrimitiveHandler {
+    public long handlePrimitive(Call call) {
+      for (int i = 0; i < call.size(); i++) {
+        arguments.add(call.objectAt(i));
+      }
+      return 0;
+    }
+
+    public Object handleObject(Call call) {
+      return null;
+    }
+  }
+
+  private static class Returning extends PrimitiveHandler {
+    public long handlePrimitive(Call call) throws Throwable {
+      String name = call.method().getName();
+      Class<?> type = call.method().getParameterTypes()[0];
+      return name.equals("negate")
+          ? Call.bitsOf(!call.booleanAt(0))
+          : name.equals("next")
+              ? call.charAt(0) + 1
+              : type == float.class
+                  ? Call.bitsOf(call.floatAt(0) + call.floatAt(1))
+                  : type == double.class
+                      ? Call.bitsOf(call.doubleAt(0) + call.doubleAt(1))
+                      : call.longAt(0) + call.longAt(1);
+    }
+
+    public Object handleObject(Call call) throws Throwable {
+      return call.objectAt(0);
+    }
+  }
+
+  public static abstract class Arithmetic {
+    public abstract void all(boolean a, char b, byte c, short d, int e, long f, float g, double h,
+        Object i);
+
+    public abstract boolean negate(boolean a);
+
+    public abstract char next(char a);
+
+    public abstract int add(int a, int b);
+
+    public abstract long add(long a, long b);
+
+    public abstract float add(float a, float b);
+
+    public abstract double add(double a, double b);
+
+    public abstract Object identity(Object a);
+  }
+
+  public static interface Operations {
+    void all(boolean a, char b, byte c, short d, int e, long f, float g, double h, Object i);
+
+    int add(int a, int b);
+
+    double add(double a, double b);
+  }
+
+  private static Set<Class<?>> interfaces(Class<?>... elements) {
+    return new HashSet<Class<?>>(Arrays.asList(elements));
+  }
+}